@@ -23,6 +23,8 @@ public final class R {
         public static final int gesture_view=0x7f090000;
         public static final int load=0x7f090003;
         public static final int save=0x7f090002;
+        public static final int simplify=0x7f090004;
+        public static final int undo=0x7f090005;
     }
     public static final class layout {
         public static final int activity_path_maker=0x7f030000;
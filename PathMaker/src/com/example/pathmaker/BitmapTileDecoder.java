@@ -0,0 +1,189 @@
+
+package com.example.pathmaker;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import android.annotation.SuppressLint;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+@SuppressLint("NewApi")
+public class BitmapTileDecoder implements TileCache.Decoder<Bitmap>
+{
+	/*
+	 * Decodes tiles of an image resource for TileCache. From API 10 on only
+	 * the requested region is decoded (BitmapRegionDecoder), so the full
+	 * image is never in memory. Older versions have no way of doing that:
+	 * there the whole image is decoded once and tiles are cut from it.
+	 * 
+	 * The image is scaled for the screen's density just like getDrawable()
+	 * scales it, so tile coordinates (and with them the map's waypoints)
+	 * are the same as when the map was a single drawable. A region decode
+	 * reads the matching part of the unscaled image and scales it to the
+	 * tile's size.
+	 */
+
+	private final Resources resources;
+	private final int resourceID;
+	private final Bitmap.Config config;
+	private TileGrid grid;
+	private BitmapRegionDecoder regionDecoder;
+	private Bitmap whole;
+	// Density of the resource and of the screen, as getDrawable() uses them
+	private int density;
+	private int targetDensity;
+	private int imageWidth;
+	private int imageHeight;
+
+	public BitmapTileDecoder(Resources res, int resourceID,
+			Bitmap.Config config)
+	{
+		resources = res;
+		this.resourceID = resourceID;
+		this.config = config;
+	}
+
+	// Reads the image's size without decoding it
+	public TileGrid createGrid(int tileSize)
+	{
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		TypedValue value = new TypedValue();
+		InputStream in = resources.openRawResource(resourceID, value);
+		try
+		{
+			BitmapFactory.decodeStream(in, null, options);
+		}
+		finally
+		{
+			close(in);
+		}
+		// The same rules as BitmapFactory.decodeResource()
+		if (value.density == TypedValue.DENSITY_DEFAULT)
+			density = DisplayMetrics.DENSITY_DEFAULT;
+		else if (value.density == TypedValue.DENSITY_NONE)
+			density = 0;
+		else
+			density = value.density;
+		targetDensity = density == 0 ? 0
+				: resources.getDisplayMetrics().densityDpi;
+		imageWidth = options.outWidth;
+		imageHeight = options.outHeight;
+		grid = new TileGrid(tileSize, scale(imageWidth), scale(imageHeight));
+		return grid;
+	}
+
+	public Bitmap decode(int key) throws IOException
+	{
+		int left = grid.getLeft(key);
+		int top = grid.getTop(key);
+		int width = grid.getWidth(key);
+		int height = grid.getHeight(key);
+		if (android.os.Build.VERSION.SDK_INT >= 10)
+		{
+			if (regionDecoder == null)
+			{
+				InputStream in = resources.openRawResource(resourceID);
+				try
+				{
+					regionDecoder = BitmapRegionDecoder.newInstance(in, false);
+				}
+				finally
+				{
+					close(in);
+				}
+			}
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inPreferredConfig = config;
+			Bitmap tile = regionDecoder.decodeRegion(unscale(left, top,
+					width, height), options);
+			if (tile == null)
+				throw new IOException("Couldn't decode tile " + key);
+			if (tile.getWidth() == width && tile.getHeight() == height)
+				return tile;
+			Bitmap scaled = Bitmap.createScaledBitmap(tile, width, height,
+					true);
+			tile.recycle();
+			return scaled;
+		}
+
+		if (whole == null)
+		{
+			BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inPreferredConfig = config;
+			options.inDensity = density;
+			options.inTargetDensity = targetDensity;
+			options.inScaled = density != 0;
+			InputStream in = resources.openRawResource(resourceID);
+			try
+			{
+				whole = BitmapFactory.decodeStream(in, null, options);
+			}
+			finally
+			{
+				close(in);
+			}
+			if (whole == null)
+				throw new IOException("Couldn't decode image");
+		}
+		// BitmapFactory may round the scaled size the other way
+		return Bitmap.createBitmap(whole, left, top,
+				Math.min(width, whole.getWidth() - left),
+				Math.min(height, whole.getHeight() - top));
+	}
+
+	// An image size in screen pixels, rounded like Bitmap's scaled sizes
+	private int scale(int size)
+	{
+		if (density == 0 || density == targetDensity)
+			return size;
+		return (size * targetDensity + (density >> 1)) / density;
+	}
+
+	// The part of the unscaled image that covers a tile
+	private Rect unscale(int left, int top, int width, int height)
+	{
+		if (density == 0 || density == targetDensity)
+			return new Rect(left, top, left + width, top + height);
+		int right = Math.min(imageWidth, ceilUnscale(left + width));
+		int bottom = Math.min(imageHeight, ceilUnscale(top + height));
+		return new Rect(left * density / targetDensity, top * density
+				/ targetDensity, right, bottom);
+	}
+
+	private int ceilUnscale(int position)
+	{
+		return (position * density + targetDensity - 1) / targetDensity;
+	}
+
+	public int sizeOf(Bitmap tile)
+	{
+		// getByteCount() is API 12
+		return tile.getRowBytes() * tile.getHeight();
+	}
+
+	public void release(Bitmap tile)
+	{
+		// createBitmap() returns the source itself for a full size region
+		if (tile != whole)
+			tile.recycle();
+	}
+
+	private static void close(InputStream in)
+	{
+		try
+		{
+			in.close();
+		}
+		catch (IOException e)
+		{
+			// Nothing was written
+		}
+	}
+}
@@ -1,6 +1,9 @@
 
 package com.example.pathmaker;
 
+import java.io.File;
+import java.io.IOException;
+
 import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.AlertDialog;
@@ -8,6 +11,7 @@ import android.content.DialogInterface;
 import android.content.res.Configuration;
 import android.graphics.Point;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Display;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -29,6 +33,9 @@ public class PathMakerActivity extends Activity
 	{
 		super.onCreate(savedInstanceState);
 
+		// Timings are only collected on debug builds, see onPause()
+		Metrics.setEnabled(BuildConfig.DEBUG);
+
 		// Fullscreen
 		requestWindowFeature(Window.FEATURE_NO_TITLE);
 		getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN,
@@ -43,8 +50,26 @@ public class PathMakerActivity extends Activity
 				cameraHeight);
 
 		setContentView(pathView);
+	}
 
-		MapSaveService.init(getBaseContext());
+	// Leaves the metrics collected so far in metrics.json next to the maps,
+	// where they can be pulled off test devices
+	@Override
+	protected void onPause()
+	{
+		super.onPause();
+		if (Metrics.isEnabled())
+		{
+			try
+			{
+				Metrics.dump(new File(getExternalFilesDir(null),
+						"metrics.json"));
+			}
+			catch (IOException e)
+			{
+				Log.e("PathMakerActivity", "Couldn't write metrics", e);
+			}
+		}
 	}
 
 	@SuppressWarnings("deprecation")
@@ -148,6 +173,14 @@ public class PathMakerActivity extends Activity
 
 			loadBuilder.show();
 			break;
+		// Remove waypoints that don't change the shape of the paths
+		case R.id.simplify:
+			pathView.simplifyPaths();
+			break;
+		// Delete the points of the latest stroke
+		case R.id.undo:
+			pathView.undoStroke();
+			break;
 		default:
 			break;
 		}
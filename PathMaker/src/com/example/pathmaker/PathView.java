@@ -1,29 +1,71 @@
 
 package com.example.pathmaker;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.Future;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.drawable.Drawable;
 import android.os.SystemClock;
+import android.util.Log;
 import android.view.MotionEvent;
 import android.widget.ImageView;
 
 public class PathView extends ImageView
 {
+	private static final LatencyHistogram TOUCH_TIME = Metrics
+			.histogram("touch");
+	private static final LatencyHistogram DRAW_TIME = Metrics
+			.histogram("draw");
+
 	private final long DOUBLE_TAP_TIME = 500L;
 	private final float MIN_DIST = 30.0f;
 	private final float MAX_DIST = 50.0f;
+	private final float LINE_WIDTH = 8.0f;
+	private final float POINT_SIZE = 16.0f;
+	// How far (in pixels) a stroke may stray from its simplified version
+	private final float SIMPLIFY_TOLERANCE = 6.0f;
+	// The background map is decoded in tiles of this size (in pixels)...
+	private final int TILE_SIZE = 256;
+	// ...keeping up to this many bytes of them
+	private final long TILE_CACHE_BYTES = 8L * 1024 * 1024;
+	// Rings of tiles around the camera window decoded ahead of time
+	private final int TILE_PREFETCH = 1;
+	// Problems listed in the log when a loaded map had to be repaired
+	private final int MAX_LOGGED_REPAIRS = 20;
 	private final Context context;
 	private Paint thinPaint = new Paint();
 	private Paint thickPaint = new Paint();
-	private ArrayList<Waypoint> waypoints = new ArrayList<Waypoint>();
+	private WaypointGrid grid = new WaypointGrid(MAX_DIST);
+	private RenderCache renderCache = new RenderCache();
+	private DrawList visible = new DrawList();
+	private TileGrid tileGrid;
+	private TileCache<Bitmap> tiles;
+	private int[] tileKeys = new int[0];
+	private int[] visibleTileCount = new int[1];
+	private StrokeSimplifier simplifier;
+	private TouchSampler sampler;
+	private AsyncMapStore store = new AsyncMapStore();
+	private StoreCallback storeCallback = new StoreCallback();
+	private LoadCallback loadCallback = new LoadCallback();
+	private Future<?> pendingLoad;
+	// Records edits to the map file last saved or loaded, null before that
+	private MapJournal journal;
+	// Fraction of the current save or load that is done, negative if idle
+	private volatile float ioProgress = -1f;
 	private MapBundle bundle;
+	// What the last frame showed, for the metrics gauges
+	private volatile MapSnapshot drawn = MapSnapshot.EMPTY;
 	private Waypoint lastPoint;
 	private Waypoint lastParent;
+	// First and last waypoint added by the latest stroke, for undoStroke()
+	private Waypoint strokeFirst;
+	private Waypoint strokeLast;
 	private int cameraZeroX;
 	private int cameraZeroY;
 	private int cameraX;
@@ -50,11 +92,21 @@ public class PathView extends ImageView
 
 		setPaints();
 
-		setScaleType(ScaleType.CENTER);
-		Drawable bg = getResources().getDrawable(resourceID);
-		setImageDrawable(bg);
-		imageWidth = bg.getIntrinsicWidth();
-		imageHeight = bg.getIntrinsicHeight();
+		// Only the tiles around the camera window are ever decoded, so the
+		// size of the map isn't limited by memory
+		BitmapTileDecoder decoder = new BitmapTileDecoder(getResources(),
+				resourceID, Bitmap.Config.RGB_565);
+		tileGrid = decoder.createGrid(TILE_SIZE);
+		tiles = new TileCache<Bitmap>(decoder, new TileCache.Listener()
+		{
+			public void onTileLoaded(int key)
+			{
+				postInvalidate();
+			}
+		}, TILE_CACHE_BYTES);
+		imageWidth = tileGrid.width;
+		imageHeight = tileGrid.height;
+		registerGauges();
 		cameraZeroX = -imageWidth / 2 + cameraWidth / 2;
 		cameraZeroY = -imageHeight / 2 + cameraHeight / 2;
 		cameraX = cameraZeroX;
@@ -62,6 +114,54 @@ public class PathView extends ImageView
 		scrollTo((int) cameraX, (int) cameraY);
 
 		bundle = new MapBundle();
+
+		// Points of a stroke only become waypoints once the simplifier is
+		// done with them
+		simplifier = new StrokeSimplifier(SIMPLIFY_TOLERANCE,
+				new StrokeSimplifier.Sink()
+				{
+					public void commit(int x, int y)
+					{
+						addStrokePoint(x, y);
+					}
+				});
+		// Every touch sample (including the batched historical ones) goes
+		// through the sampler, which passes on one every MIN_DIST
+		sampler = new TouchSampler(MIN_DIST, new TouchSampler.Listener()
+		{
+			public void onSample(int x, int y)
+			{
+				simplifier.add(x, y);
+				invalidate();
+			}
+		});
+	}
+
+	// Map size as of the last frame. The gauges read the snapshot drawn
+	// last, as the metrics may be dumped from any thread.
+	private void registerGauges()
+	{
+		Metrics.gauge("paths", new Metrics.Gauge()
+		{
+			public long getValue()
+			{
+				return drawn.getPathCount();
+			}
+		});
+		Metrics.gauge("waypoints", new Metrics.Gauge()
+		{
+			public long getValue()
+			{
+				return drawn.getWaypointCount();
+			}
+		});
+		Metrics.gauge("edges", new Metrics.Gauge()
+		{
+			public long getValue()
+			{
+				return drawn.getEdgeCount();
+			}
+		});
 	}
 
 	// thinPaint is used for lines
@@ -70,10 +170,10 @@ public class PathView extends ImageView
 	{
 		thinPaint.setColor(Color.BLUE);
 		thinPaint.setStyle(Paint.Style.STROKE);
-		thinPaint.setStrokeWidth(8);
+		thinPaint.setStrokeWidth(LINE_WIDTH);
 		thickPaint.setColor(Color.BLUE);
 		thickPaint.setStyle(Paint.Style.STROKE);
-		thickPaint.setStrokeWidth(16);
+		thickPaint.setStrokeWidth(POINT_SIZE);
 	}
 
 	// Remove all paths and points
@@ -85,107 +185,265 @@ public class PathView extends ImageView
 		lastPoint = null;
 		lastParent = null;
 		bundle.paths.clear();
-		waypoints.clear();
+		simplifier.cancel();
+		grid.clear();
+		// The cleared map is a new one, not an edit of the saved file
+		setJournal(null);
+		geometryChanged();
 	}
 
-	// Save all paths using bundle's save method
+	// Save all paths in the background. Drawing can go on in the meantime,
+	// the file gets the paths as they are now. Later edits are journaled to
+	// the same file.
 	public void savePaths(String filename)
 	{
 		if (!bundle.paths.isEmpty())
 		{
-			MapSaveService.save(context, bundle, filename);
+			File file = getMapFile(filename);
+			if (journal == null || !journal.getMapFile().equals(file))
+				setJournal(MapJournal.create(file));
+			ioProgress = 0f;
+			store.save(bundle, journal, storeCallback);
 		}
 	}
 
-	// Load paths
+	// Load paths in the background, they replace the current ones once
+	// loading is done
 	public void loadPaths(String filename)
 	{
-		MapBundle newPaths = null;
-		newPaths = MapSaveService.load(context, filename);
-		if (newPaths != null)
+		if (pendingLoad != null)
+			pendingLoad.cancel(true);
+		ioProgress = 0f;
+		pendingLoad = store.load(getMapFile(filename), loadCallback);
+	}
+
+	private File getMapFile(String filename)
+	{
+		return new File(context.getExternalFilesDir(null), filename);
+	}
+
+	private void setJournal(MapJournal newJournal)
+	{
+		if (journal != null)
+			store.close(journal);
+		journal = newJournal;
+	}
+
+	// Journals the edits made since the last commit
+	private void commitEdits()
+	{
+		if (journal != null)
+			store.commit(bundle, journal, storeCallback);
+	}
+
+	// The store only renumbers the live paths on the next commit after a
+	// save, so that's done right away and the paths are redrawn with the
+	// new ids
+	private void saveFinished()
+	{
+		commitEdits();
+		geometryChanged();
+	}
+
+	// Runs on the UI thread, so the swap is never seen half done
+	private void setBundle(MapBundle newPaths, MapJournal newJournal)
+	{
+		bundle = newPaths;
+		setJournal(newJournal);
+		// The old bundle's points are gone, so they can't be snapped to or
+		// continued
+		sampler.end();
+		simplifier.cancel();
+		lastPoint = null;
+		lastParent = null;
+		grid.clear();
+		grid.addAll(bundle);
+		geometryChanged();
+	}
+
+	// Called on the store's thread, everything that touches the view is
+	// posted back to the UI thread
+	private class StoreCallback implements AsyncMapStore.Callback
+	{
+		public void onProgress(long done, long total)
+		{
+			ioProgress = total > 0 ? (float) done / total : 0f;
+			postInvalidate();
+		}
+
+		public void onSaved(File file)
 		{
-			bundle = newPaths;
-			// Add waypoints to View's list (for drawing & searching)
-			for (MapPath p : bundle.paths)
+			post(new Runnable()
 			{
-				// p.resize(cameraWidth, cameraHeight);
-				for (int i = 0; i < p.size(); i++)
+				public void run()
 				{
-					waypoints.add(p.getWaypoint(i));
+					saveFinished();
 				}
-			}
-			// Make sure any leftover searches are cleaned up
-			unvisitNodes();
+			});
+			ioFinished();
+		}
+
+		public void onLoaded(File file, final MapBundle loaded,
+				final MapJournal loadedJournal)
+		{
+			post(new Runnable()
+			{
+				public void run()
+				{
+					setBundle(loaded, loadedJournal);
+				}
+			});
+			ioFinished();
+		}
+
+		public void onRepaired(File file,
+				ArrayList<PathValidator.Violation> violations)
+		{
+			Log.w("PathView", "Repaired " + violations.size()
+					+ " problems in " + file);
+			int logged = Math.min(violations.size(), MAX_LOGGED_REPAIRS);
+			for (int i = 0; i < logged; i++)
+				Log.w("PathView", violations.get(i).toString());
+		}
+
+		public void onFailed(File file, IOException e)
+		{
+			Log.e("PathView", "Couldn't access " + file, e);
+			post(new Runnable()
+			{
+				public void run()
+				{
+					saveFinished();
+				}
+			});
+			ioFinished();
 		}
 	}
 
-	// Used to avoid TSP when searching
-	private void unvisitNodes()
+	// A failed load leaves the current paths and journal alone, so there's
+	// nothing to commit
+	private class LoadCallback extends StoreCallback
 	{
-		for (Waypoint wp : waypoints)
+		@Override
+		public void onFailed(File file, IOException e)
 		{
-			wp.visited = false;
+			Log.e("PathView", "Couldn't load " + file, e);
+			ioFinished();
 		}
 	}
 
-	// Returns (Manhattan) distance between two waypoints
-	private float getDistance(Waypoint a, Waypoint b)
+	private void ioFinished()
 	{
-		cameraZeroX = -imageWidth / 2 + cameraWidth / 2;
-		if (a == null || b == null)
-			return Float.MAX_VALUE;
-		float dx = b.x - a.x;
-		float dy = b.y - a.y;
-		return (float) Math.sqrt(dx * dx + dy * dy);
+		ioProgress = -1f;
+		postInvalidate();
 	}
 
-	// Gets closest point already placed
-	private Waypoint getClosestWaypoint(Waypoint wp)
+	// Removes waypoints that don't add to the shape of the existing paths
+	public void simplifyPaths()
 	{
-		float minDist = MAX_DIST;
-		Waypoint retPt = null;
-		for (Waypoint candidate : waypoints)
+		new PathSimplifier(SIMPLIFY_TOLERANCE).simplify(bundle, journal);
+		// The removed waypoints stay as tombstones until a snapshot without
+		// them is written, so write one right away
+		if (journal != null)
+			store.save(bundle, journal, storeCallback);
+		simplifier.cancel();
+		lastPoint = null;
+		lastParent = null;
+		grid.clear();
+		grid.addAll(bundle);
+		geometryChanged();
+	}
+
+	// Deletes the waypoints added by the latest stroke. A stroke's waypoints
+	// are numbered consecutively, and stay that way through merges and
+	// compaction, so the whole stroke goes in one range.
+	public void undoStroke()
+	{
+		if (strokeFirst == null)
+			return;
+		MapPath p = strokeFirst.path;
+		// Compaction or simplifying may have taken the ends of the stroke
+		if (strokeLast.path == p && isAt(p, strokeFirst)
+				&& isAt(p, strokeLast))
+			deleteWaypoints(p, strokeFirst.id, strokeLast.id + 1);
+		strokeFirst = null;
+		strokeLast = null;
+	}
+
+	// Deletes one waypoint, disconnecting it from its neighbours
+	public void deleteWaypoint(Waypoint wp)
+	{
+		if (isAt(wp.path, wp))
+			deleteWaypoints(wp.path, wp.id, wp.id + 1);
+	}
+
+	// True if wp is still waypoint wp.id of p, and p is still on the map
+	private boolean isAt(MapPath p, Waypoint wp)
+	{
+		return wp.id < p.size() && p.getWaypoint(wp.id) == wp
+				&& !p.isDeleted(wp.id) && bundle.paths.lastIndexOf(p) >= 0;
+	}
+
+	// Deleted waypoints stay in the path as tombstones until the next save
+	private void deleteWaypoints(MapPath p, int from, int to)
+	{
+		if (journal != null)
+			journal.recordDelete(bundle.paths.lastIndexOf(p), from, to);
+		for (int id = from; id < to; id++)
 		{
-			if (candidate == lastPoint || candidate == lastParent)
-				continue;
-			float dist = getDistance(candidate, wp);
-			if (dist < minDist)
-			{
-				retPt = candidate;
-				minDist = dist;
-			}
+			if (!p.isDeleted(id))
+				grid.remove(p.getWaypoint(id));
 		}
-		return retPt;
+		p.deleteRange(from, to);
+		commitEdits();
+		geometryChanged();
 	}
 
-	// Connects two waypoints, and integrates a onto b's path if not already the
+	// Paths were edited, so the cached geometry has to be rebuilt and shown
+	private void geometryChanged()
+	{
+		renderCache.markDirty();
+		invalidate();
+	}
+
+	// Gets closest point already placed (within MAX_DIST)
+	private Waypoint getClosestWaypoint(float x, float y)
+	{
+		return grid.nearest(x, y, MAX_DIST, lastPoint, lastParent);
+	}
+
+	// Connects two waypoints, and integrates their paths if not already the
 	// same. a should always be the new waypoint.
 	private void connectPoints(Waypoint a, Waypoint b)
 	{
-		if (a.path != b.path)
+		if (journal != null)
 		{
-			bundle.paths.remove(a.path);
-			// Switch all waypoints in a's path to b's path
-			b.path.integrate(a.path);
+			journal.recordConnect(bundle.paths.lastIndexOf(a.path), a.id,
+					bundle.paths.lastIndexOf(b.path), b.id);
 		}
-		a.addConnection(b);
-		b.addConnection(a);
+		bundle.connect(a, b);
+		geometryChanged();
 	}
 
 	@Override
 	public boolean onTouchEvent(MotionEvent e)
 	{
-		Waypoint wp = new Waypoint((int) (e.getX() + cameraX - cameraZeroX),
-				(int) (e.getY() + cameraY - cameraZeroY));
+		long start = Metrics.start();
+		// Touch position in map coordinates
+		float offsetX = cameraX - cameraZeroX;
+		float offsetY = cameraY - cameraZeroY;
+		int x = (int) (e.getX() + offsetX);
+		int y = (int) (e.getY() + offsetY);
 
 		// On touch down, either place a new root or prepare to continue an
 		// existing path
 		if (e.getAction() == MotionEvent.ACTION_DOWN)
 		{
-			Waypoint closest = getClosestWaypoint(wp);
+			Waypoint closest = getClosestWaypoint(x, y);
 			if (closest != null)
 			{
 				lastPoint = closest;
+				beginStroke(e);
 			}
 			else
 			{
@@ -193,9 +451,16 @@ public class PathView extends ImageView
 				long dt = time - lastTapTime;
 				if (dt < DOUBLE_TAP_TIME)
 				{
+					Waypoint wp = new Waypoint(x, y);
 					bundle.paths.add(new MapPath(wp));
+					if (journal != null)
+						journal.recordNewPath(x, y);
 					lastPoint = wp;
-					waypoints.add(wp);
+					grid.add(wp);
+					beginStroke(e);
+					strokeFirst = wp;
+					strokeLast = wp;
+					geometryChanged();
 				}
 				else
 				{
@@ -225,19 +490,24 @@ public class PathView extends ImageView
 						Math.min((int) (cameraY + dy), imageHeight / 2
 								- cameraHeight / 2));
 				scrollTo((int) cameraX, (int) cameraY);
+				invalidate();
 
 				// Set new X,Y position
 				lastX = e.getX();
 				lastY = e.getY();
 			}
-			else if (getDistance(wp, lastPoint) > MIN_DIST)
+			else
 			{
-				lastPoint.path.addWaypoint(wp);
-				connectPoints(wp, lastPoint);
-
-				lastParent = lastPoint;
-				lastPoint = wp;
-				waypoints.add(wp);
+				// Samples batched into this event come first, oldest first
+				int history = e.getHistorySize();
+				for (int i = 0; i < history; i++)
+				{
+					sampler.add(e.getHistoricalX(i) + offsetX,
+							e.getHistoricalY(i) + offsetY,
+							e.getHistoricalEventTime(i));
+				}
+				sampler.add(e.getX() + offsetX, e.getY() + offsetY,
+						e.getEventTime());
 			}
 
 		}
@@ -247,19 +517,52 @@ public class PathView extends ImageView
 		{
 			if (!dragging)
 			{
-				Waypoint closest = getClosestWaypoint(wp);
-				if (closest != null)
+				sampler.end();
+				simplifier.finish();
+				Waypoint closest = getClosestWaypoint(x, y);
+				if (closest != null && lastPoint != null)
 				{
 					connectPoints(lastPoint, closest);
 				}
 				lastPoint = null;
 				lastParent = null;
+				commitEdits();
 			}
 			dragging = false;
 		}
+		TOUCH_TIME.stop(start);
 		return true;
 	}
 
+	// Starts drawing a stroke from lastPoint
+	private void beginStroke(MotionEvent e)
+	{
+		strokeFirst = null;
+		strokeLast = null;
+		sampler.begin(lastPoint.x, lastPoint.y, e.getEventTime());
+		simplifier.begin(lastPoint.x, lastPoint.y);
+	}
+
+	// Adds a point of the current stroke to lastPoint's path
+	private void addStrokePoint(int x, int y)
+	{
+		Waypoint wp = new Waypoint(x, y);
+		if (journal != null)
+		{
+			journal.recordWaypoint(bundle.paths.lastIndexOf(lastPoint.path),
+					x, y);
+		}
+		lastPoint.path.addWaypoint(wp);
+		connectPoints(wp, lastPoint);
+
+		lastParent = lastPoint;
+		lastPoint = wp;
+		grid.add(wp);
+		if (strokeFirst == null)
+			strokeFirst = wp;
+		strokeLast = wp;
+	}
+
 	// Used for color picking: path number determines color
 	private int maskBytes(int numBytes)
 	{
@@ -276,46 +579,99 @@ public class PathView extends ImageView
 		return mask;
 	}
 
-	// Draws lines between points by following the path
-	private void recursiveDrawLine(Canvas canvas, Waypoint wp)
-	{
-		// Don't visit the same node twice
-		wp.visited = true;
-		canvas.drawPoint(wp.x + cameraZeroX, wp.y + cameraZeroY, thickPaint);
-		MapPath path = wp.path;
-		for (Edge childEdge : wp.getConnections())
-		{
-			// Drawing the same line twice is pretty harmless, so I'm not TOO
-			// careful here, and it doesn't seem to affect performance
-			Waypoint child = path.getWaypoint(childEdge.edgeToId);
-			canvas.drawLine(wp.x + cameraZeroX, wp.y + cameraZeroY, child.x
-					+ cameraZeroX, child.y + cameraZeroY, thinPaint);
-			if (!child.visited)
-			{
-				recursiveDrawLine(canvas, child);
-			}
-		}
-	}
-
 	@Override
 	public void onDraw(Canvas canvas)
 	{
 		super.onDraw(canvas);
+		long start = Metrics.start();
+
+		// Only walks the paths if something changed since the last frame.
+		// Publishing also hands the edits to background readers.
+		if (renderCache.isDirty())
+		{
+			drawn = bundle.publish();
+			renderCache.update(drawn);
+		}
+
+		// Camera window in map coordinates, padded so that points and lines
+		// crossing the edge aren't clipped
+		float pad = POINT_SIZE;
+		float left = cameraX - cameraZeroX - pad;
+		float top = cameraY - cameraZeroY - pad;
+		float right = cameraX - cameraZeroX + cameraWidth + pad;
+		float bottom = cameraY - cameraZeroY + cameraHeight + pad;
 
-		// Draw each path
-		for (int i = 0; i < bundle.paths.size(); i++)
+		canvas.save();
+		canvas.translate(cameraZeroX, cameraZeroY);
+		drawBackground(canvas, left, top, right, bottom);
+		// Draw the visible part of each path
+		for (int i = 0; i < renderCache.size(); i++)
 		{
+			renderCache.cull(i, left, top, right, bottom, visible);
 			int color = maskBytes(i % 7 + 1);
 			thinPaint.setColor(color);
 			thickPaint.setColor(color);
-			recursiveDrawLine(canvas, bundle.paths.get(i).getRoot());
+			if (visible.segmentFloats > 0)
+				canvas.drawLines(visible.segments, 0, visible.segmentFloats,
+						thinPaint);
+			if (visible.pointFloats > 0)
+				canvas.drawPoints(visible.points, 0, visible.pointFloats,
+						thickPaint);
 		}
-		// Reset nodes for next draw cycle
-		unvisitNodes();
+		// Show the part of the stroke that hasn't been committed yet
+		if (simplifier.hasPending() && lastPoint != null)
+		{
+			thinPaint.setColor(maskBytes(bundle.paths
+					.indexOf(lastPoint.path) % 7 + 1));
+			canvas.drawLine(lastPoint.x, lastPoint.y,
+					simplifier.getPendingX(), simplifier.getPendingY(),
+					thinPaint);
+		}
+		canvas.restore();
 
-		// Not sure what this does, but it was in all the online example code
-		// snippets for drawing on a view
-		invalidate();
+		// Progress bar along the top of the screen while saving or loading
+		float progress = ioProgress;
+		if (progress >= 0f)
+		{
+			thinPaint.setColor(Color.BLUE);
+			canvas.drawLine(cameraX, cameraY + LINE_WIDTH / 2, cameraX
+					+ cameraWidth * progress, cameraY + LINE_WIDTH / 2,
+					thinPaint);
+		}
+		DRAW_TIME.stop(start);
+	}
+
+	@Override
+	protected void onDetachedFromWindow()
+	{
+		super.onDetachedFromWindow();
+		// Lets a running save finish
+		commitEdits();
+		setJournal(null);
+		store.shutdown();
+		tiles.close();
+	}
+
+	// Draws the background tiles that are loaded, and asks for the missing
+	// ones (they trigger another frame once decoded)
+	private void drawBackground(Canvas canvas, float left, float top,
+			float right, float bottom)
+	{
+		int max = tileGrid.getMaxTiles(right - left, bottom - top,
+				TILE_PREFETCH);
+		if (tileKeys.length < max)
+			tileKeys = new int[max];
+		int count = tileGrid.collect(left, top, right, bottom, TILE_PREFETCH,
+				tileKeys, visibleTileCount);
+		tiles.request(tileKeys, count);
+		for (int i = 0; i < visibleTileCount[0]; i++)
+		{
+			int key = tileKeys[i];
+			Bitmap tile = tiles.get(key);
+			if (tile != null)
+				canvas.drawBitmap(tile, tileGrid.getLeft(key),
+						tileGrid.getTop(key), null);
+		}
 	}
 
 	// When the phone is rotated, resize the paths
@@ -328,6 +684,7 @@ public class PathView extends ImageView
 		cameraX = cameraZeroX;
 		cameraY = cameraZeroY;
 		scrollTo(cameraX, cameraY);
+		invalidate();
 		// bundle.resize(camWidth, camHeight);
 	}
 }
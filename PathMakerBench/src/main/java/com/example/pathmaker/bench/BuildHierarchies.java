@@ -0,0 +1,41 @@
+
+package com.example.pathmaker.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.example.pathmaker.ContractionHierarchy;
+import com.example.pathmaker.HierarchyBuilder;
+import com.example.pathmaker.MapBundle;
+import com.example.pathmaker.MapFiles;
+
+// Builds and saves the hierarchies of the map files given as arguments, so
+// that shipped maps don't have to be preprocessed on the device. Run with
+// java -cp PathMakerBench/target/benchmarks.jar
+// com.example.pathmaker.bench.BuildHierarchies <map files>
+public class BuildHierarchies
+{
+	private BuildHierarchies()
+	{
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		HierarchyBuilder builder = new HierarchyBuilder();
+		for (String name : args)
+		{
+			File file = new File(name);
+			MapBundle bundle = MapFiles.load(file);
+			long start = System.nanoTime();
+			ContractionHierarchy[] hierarchies = builder.build(bundle
+					.publish());
+			ContractionHierarchy.save(file, hierarchies);
+			int shortcuts = 0;
+			for (ContractionHierarchy h : hierarchies)
+				shortcuts += h.getShortcutCount();
+			System.out.println(name + ": " + hierarchies.length + " paths, "
+					+ shortcuts + " shortcuts, "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		}
+	}
+}
@@ -0,0 +1,71 @@
+
+package com.example.pathmaker.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pathmaker.DistanceMatrix;
+import com.example.pathmaker.FrozenPath;
+
+// A 200 x 200 matrix between random waypoints, to see how it scales with
+// the number of threads
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class DistanceMatrixBenchmark
+{
+	private static final int POINTS = 200;
+
+	@Param({ "10000", "100000" })
+	public int waypoints;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	private FrozenPath path;
+	private DistanceMatrix matrix;
+	private final int[] sources = new int[POINTS];
+	private final int[] targets = new int[POINTS];
+
+	@Setup
+	public void setUp()
+	{
+		path = new MapGenerator(42).generate(waypoints, 1).getPrimaryPath()
+				.freeze();
+		matrix = new DistanceMatrix(threads);
+		Random random = new Random(7);
+		for (int i = 0; i < POINTS; i++)
+		{
+			sources[i] = random.nextInt(path.size);
+			targets[i] = random.nextInt(path.size);
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		matrix.shutdown();
+	}
+
+	@Benchmark
+	public float[][] compute() throws InterruptedException
+	{
+		return matrix.compute(path, sources, targets);
+	}
+}
@@ -0,0 +1,64 @@
+
+package com.example.pathmaker.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pathmaker.MapBundle;
+import com.example.pathmaker.MapPath;
+
+// Merging one path into another. Each merge consumes its paths, so every
+// iteration measures a single merge of freshly generated ones.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class IntegrateBenchmark
+{
+	// Waypoints of the path merged into
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int waypoints;
+
+	// Size of the merged path relative to the other one. Drawing mostly
+	// merges small strokes into big paths; 1.0 is the worst case.
+	@Param({ "0.01", "1.0" })
+	public double ratio;
+
+	private MapPath larger;
+	private MapPath smaller;
+	private int seed = 0;
+
+	@Setup(Level.Iteration)
+	public void setUp()
+	{
+		larger = generatePath(waypoints);
+		smaller = generatePath(Math.max(1, (int) (waypoints * ratio)));
+	}
+
+	private MapPath generatePath(int size)
+	{
+		MapBundle bundle = new MapGenerator(seed++).generate(size, 1);
+		return bundle.getPrimaryPath();
+	}
+
+	@Benchmark
+	public MapPath integrate()
+	{
+		larger.integrate(smaller);
+		return larger;
+	}
+}
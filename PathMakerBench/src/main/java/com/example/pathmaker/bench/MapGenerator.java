@@ -0,0 +1,104 @@
+
+package com.example.pathmaker.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.example.pathmaker.MapBundle;
+import com.example.pathmaker.MapPath;
+import com.example.pathmaker.Waypoint;
+import com.example.pathmaker.WaypointGrid;
+
+public class MapGenerator
+{
+	// Distance between the points of a stroke, like PathView's MIN_DIST
+	private static final float STEP = 30f;
+	// How far a stroke's end snaps to an existing waypoint (PathView's
+	// MAX_DIST)
+	private static final float SNAP_DIST = 50f;
+	private static final int MIN_STROKE = 10;
+	private static final int MAX_STROKE = 200;
+	// Most a stroke's heading turns per step, in radians
+	private static final double MAX_TURN = 0.4;
+
+	/*
+	 * Builds maps that look like ones drawn in the app: strokes of evenly
+	 * spaced waypoints, each starting at an existing waypoint (or, now and
+	 * then, at a new root) and wandering off in a gently curving line. A
+	 * stroke that ends near another waypoint is connected to it, which
+	 * closes loops and merges paths the same way drawing does.
+	 * 
+	 * The world grows with the number of waypoints so the density stays
+	 * about the same for every size. The same seed always gives the same map.
+	 */
+
+	private final long seed;
+
+	public MapGenerator(long seed)
+	{
+		this.seed = seed;
+	}
+
+	// A map of exactly waypointCount waypoints, starting from rootCount
+	// separate paths
+	public MapBundle generate(int waypointCount, int rootCount)
+	{
+		Random random = new Random(seed);
+		float side = (float) Math.sqrt(waypointCount) * STEP * 2f;
+		MapBundle bundle = new MapBundle();
+		WaypointGrid grid = new WaypointGrid(SNAP_DIST);
+		ArrayList<Waypoint> all = new ArrayList<Waypoint>(waypointCount);
+
+		int roots = Math.max(1, Math.min(rootCount, waypointCount));
+		for (int i = 0; i < roots; i++)
+		{
+			Waypoint root = new Waypoint((int) (random.nextFloat() * side),
+					(int) (random.nextFloat() * side));
+			bundle.paths.add(new MapPath(root));
+			grid.add(root);
+			all.add(root);
+		}
+
+		while (all.size() < waypointCount)
+		{
+			Waypoint last = all.get(random.nextInt(all.size()));
+			Waypoint parent = null;
+			double heading = random.nextDouble() * 2 * Math.PI;
+			int length = MIN_STROKE + random.nextInt(MAX_STROKE - MIN_STROKE);
+			length = Math.min(length, waypointCount - all.size());
+			float x = last.x;
+			float y = last.y;
+			for (int i = 0; i < length; i++)
+			{
+				heading += (random.nextDouble() * 2 - 1) * MAX_TURN;
+				x += (float) Math.cos(heading) * STEP;
+				y += (float) Math.sin(heading) * STEP;
+				// Turn around at the edge of the world
+				if (x < 0 || y < 0 || x > side || y > side)
+				{
+					heading += Math.PI;
+					x = Math.max(0, Math.min(side, x));
+					y = Math.max(0, Math.min(side, y));
+				}
+				Waypoint wp = new Waypoint((int) x, (int) y);
+				last.path.addWaypoint(wp);
+				bundle.connect(wp, last);
+				grid.add(wp);
+				all.add(wp);
+				parent = last;
+				last = wp;
+			}
+			Waypoint closest = grid.nearest(last.x, last.y, SNAP_DIST, last,
+					parent);
+			if (closest != null)
+				bundle.connect(last, closest);
+		}
+		return bundle;
+	}
+
+	// Same as generate(), with one path per 10000 waypoints to start with
+	public MapBundle generate(int waypointCount)
+	{
+		return generate(waypointCount, 1 + waypointCount / 10000);
+	}
+}
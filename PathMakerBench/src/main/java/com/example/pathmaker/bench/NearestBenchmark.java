@@ -0,0 +1,88 @@
+
+package com.example.pathmaker.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.pathmaker.MapBundle;
+import com.example.pathmaker.MapPath;
+import com.example.pathmaker.Waypoint;
+import com.example.pathmaker.WaypointGrid;
+
+// Finding the waypoint to snap to, as done on every touch down and up
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class NearestBenchmark
+{
+	private static final int QUERIES = 1024;
+	private static final float MAX_DIST = 50f;
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int waypoints;
+
+	private WaypointGrid grid;
+	private final float[] xs = new float[QUERIES];
+	private final float[] ys = new float[QUERIES];
+
+	@Setup
+	public void setUp()
+	{
+		MapBundle bundle = new MapGenerator(42).generate(waypoints);
+		grid = new WaypointGrid(MAX_DIST);
+		grid.addAll(bundle);
+		// Half the queries land right next to a waypoint, half anywhere
+		Random random = new Random(7);
+		int maxX = 0;
+		int maxY = 0;
+		for (MapPath p : bundle.paths)
+		{
+			for (int i = 0; i < p.size(); i++)
+			{
+				maxX = Math.max(maxX, p.getWaypoint(i).x);
+				maxY = Math.max(maxY, p.getWaypoint(i).y);
+			}
+		}
+		for (int i = 0; i < QUERIES; i++)
+		{
+			if (i % 2 == 0)
+			{
+				MapPath p = bundle.paths.get(random.nextInt(bundle.paths
+						.size()));
+				Waypoint wp = p.getWaypoint(random.nextInt(p.size()));
+				xs[i] = wp.x + random.nextFloat() * 20f - 10f;
+				ys[i] = wp.y + random.nextFloat() * 20f - 10f;
+			}
+			else
+			{
+				xs[i] = random.nextFloat() * maxX;
+				ys[i] = random.nextFloat() * maxY;
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void nearest(Blackhole hole)
+	{
+		for (int i = 0; i < QUERIES; i++)
+			hole.consume(grid.nearest(xs[i], ys[i], MAX_DIST, null, null));
+	}
+}
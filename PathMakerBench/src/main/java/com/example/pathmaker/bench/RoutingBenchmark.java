@@ -0,0 +1,78 @@
+
+package com.example.pathmaker.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.pathmaker.ContractionHierarchy;
+import com.example.pathmaker.FrozenPath;
+import com.example.pathmaker.HierarchyBuilder;
+import com.example.pathmaker.HierarchyQuery;
+import com.example.pathmaker.RouteFinder;
+
+// Routes between random waypoints, with A* and on a contraction hierarchy.
+// Building the hierarchy for the largest map takes a few minutes of setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx6g" })
+public class RoutingBenchmark
+{
+	private static final int QUERIES = 64;
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int waypoints;
+
+	private FrozenPath path;
+	private ContractionHierarchy hierarchy;
+	private final int[] from = new int[QUERIES];
+	private final int[] to = new int[QUERIES];
+	private final RouteFinder finder = new RouteFinder();
+	private final HierarchyQuery query = new HierarchyQuery();
+
+	@Setup
+	public void setUp()
+	{
+		path = new MapGenerator(42).generate(waypoints, 1).getPrimaryPath()
+				.freeze();
+		hierarchy = new HierarchyBuilder().build(path);
+		Random random = new Random(7);
+		for (int i = 0; i < QUERIES; i++)
+		{
+			from[i] = random.nextInt(path.size);
+			to[i] = random.nextInt(path.size);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void astar(Blackhole hole)
+	{
+		for (int i = 0; i < QUERIES; i++)
+			hole.consume(finder.findRoute(path, from[i], to[i]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void hierarchy(Blackhole hole)
+	{
+		for (int i = 0; i < QUERIES; i++)
+			hole.consume(query.findRoute(hierarchy, from[i], to[i]));
+	}
+}
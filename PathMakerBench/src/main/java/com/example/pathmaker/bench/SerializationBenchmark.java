@@ -0,0 +1,135 @@
+
+package com.example.pathmaker.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pathmaker.BinaryMapCodec;
+import com.example.pathmaker.MapBundle;
+import com.example.pathmaker.ParallelMapLoader;
+
+// Writing and reading whole maps in the text and binary formats
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class SerializationBenchmark
+{
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int waypoints;
+
+	private MapBundle bundle;
+	private String text;
+	private byte[] binary;
+	private ParallelMapLoader loader;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		bundle = new MapGenerator(42).generate(waypoints);
+		text = bundle.serialize();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryMapCodec.write(bundle, out);
+		binary = out.toByteArray();
+		loader = new ParallelMapLoader();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		loader.shutdown();
+	}
+
+	@Benchmark
+	public long writeText() throws IOException
+	{
+		CountingWriter out = new CountingWriter();
+		bundle.write(out);
+		return out.count;
+	}
+
+	@Benchmark
+	public MapBundle parseText() throws IOException
+	{
+		return MapBundle.read(new StringReader(text));
+	}
+
+	@Benchmark
+	public MapBundle parseTextParallel() throws IOException
+	{
+		return loader.parse(text);
+	}
+
+	@Benchmark
+	public long writeBinary() throws IOException
+	{
+		CountingStream out = new CountingStream();
+		BinaryMapCodec.write(bundle, out);
+		return out.count;
+	}
+
+	@Benchmark
+	public MapBundle readBinary() throws IOException
+	{
+		return BinaryMapCodec.read(ByteBuffer.wrap(binary));
+	}
+
+	// Keeps the cost of a growing buffer out of the write benchmarks
+	private static class CountingWriter extends Writer
+	{
+		long count = 0;
+
+		@Override
+		public void write(char[] buffer, int offset, int length)
+		{
+			count += length;
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+
+	private static class CountingStream extends OutputStream
+	{
+		long count = 0;
+
+		@Override
+		public void write(int b)
+		{
+			count++;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length)
+		{
+			count += length;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+
+package com.example.pathmaker.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.pathmaker.DrawList;
+import com.example.pathmaker.DrawListBuilder;
+import com.example.pathmaker.FrozenPath;
+import com.example.pathmaker.MapPath;
+import com.example.pathmaker.Route;
+import com.example.pathmaker.RouteFinder;
+import com.example.pathmaker.VisitMarker;
+import com.example.pathmaker.Waypoint;
+
+// Walking a whole path: breadth first over the Waypoint objects and over
+// the frozen CSR arrays, building its DrawList, and a route between its
+// first and last waypoint
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class TraversalBenchmark
+{
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int waypoints;
+
+	private MapPath path;
+	private FrozenPath frozen;
+	private int[] queue;
+	private final VisitMarker visited = new VisitMarker();
+	private final DrawListBuilder builder = new DrawListBuilder();
+	private final DrawList drawList = new DrawList();
+	private final RouteFinder finder = new RouteFinder();
+
+	@Setup
+	public void setUp()
+	{
+		path = new MapGenerator(42).generate(waypoints, 1).getPrimaryPath();
+		frozen = path.freeze();
+		queue = new int[path.size()];
+	}
+
+	@Benchmark
+	public int breadthFirstObjects()
+	{
+		visited.begin(path.size());
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		visited.visit(0);
+		while (head < tail)
+		{
+			Waypoint wp = path.getWaypoint(queue[head++]);
+			int count = wp.getConnectionCount();
+			for (int i = 0; i < count; i++)
+			{
+				int to = wp.getConnectionId(i);
+				if (visited.visit(to))
+					queue[tail++] = to;
+			}
+		}
+		return tail;
+	}
+
+	@Benchmark
+	public int breadthFirstFrozen()
+	{
+		visited.begin(frozen.size);
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		visited.visit(0);
+		while (head < tail)
+		{
+			int id = queue[head++];
+			for (int e = frozen.offsets[id]; e < frozen.offsets[id + 1]; e++)
+			{
+				int to = frozen.targets[e];
+				if (visited.visit(to))
+					queue[tail++] = to;
+			}
+		}
+		return tail;
+	}
+
+	@Benchmark
+	public DrawList buildDrawList()
+	{
+		builder.build(frozen, drawList);
+		return drawList;
+	}
+
+	@Benchmark
+	public Route route()
+	{
+		return finder.findRoute(frozen, 0, frozen.size - 1);
+	}
+}
@@ -0,0 +1,460 @@
+
+package com.example.pathmaker;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+public class AsyncMapStore
+{
+	private static final int PROGRESS_STEP = 4096;
+	// Text maps at least this big are parsed on all cores
+	static final long PARALLEL_LOAD_SIZE = 1024 * 1024;
+	private static final LatencyHistogram SAVE_TIME = Metrics
+			.histogram("save");
+	private static final LatencyHistogram LOAD_TIME = Metrics
+			.histogram("load");
+	private static final LatencyHistogram APPEND_TIME = Metrics
+			.histogram("journal.append");
+	private static final Counter JOURNAL_BYTES = Metrics
+			.counter("journal.bytes");
+	private static final Counter COMPACTIONS = Metrics
+			.counter("journal.compactions");
+	private static final Counter FAILURES = Metrics.counter("io.failures");
+	private static final Counter REPAIRS = Metrics.counter("load.repairs");
+
+	public interface Callback
+	{
+		// done out of total units of work (waypoints when saving, characters
+		// when loading)
+		void onProgress(long done, long total);
+
+		void onSaved(File file);
+
+		// journal has already been replayed onto bundle; further edits should
+		// be recorded in it
+		void onLoaded(File file, MapBundle bundle, MapJournal journal);
+
+		// The file broke the invariants of a map and has been repaired.
+		// Called before onLoaded; the repairs are saved with the next
+		// snapshot.
+		void onRepaired(File file,
+				ArrayList<PathValidator.Violation> violations);
+
+		// Not called when the task was cancelled
+		void onFailed(File file, IOException e);
+	}
+
+	/*
+	 * Saves and loads maps on a single background thread. A save works from
+	 * frozen copies of the paths taken when it's requested, so the editor can
+	 * keep changing the bundle while the file is written. The file is written
+	 * under a temporary name and renamed when complete, so neither a
+	 * cancelled save nor a crash leave a half written map behind.
+	 * 
+	 * Between saves, commit() appends the edits recorded in a MapJournal
+	 * instead of rewriting the map, and only writes a new snapshot when the
+	 * journal has grown too big.
+	 * 
+	 * A snapshot leaves deleted waypoints out and renumbers the rest, but
+	 * the live bundle keeps its ids until that snapshot is safely on disk:
+	 * the next save() or commit() after it compacts the bundle. Only one such
+	 * snapshot is written at a time.
+	 * 
+	 * Callbacks run on the background thread; it's up to the caller to hand
+	 * results back to its own thread. Tasks are cancelled through the
+	 * returned Future (cancel(true)).
+	 */
+
+	private final ExecutorService executor;
+	private final ParallelMapLoader loader = new ParallelMapLoader();
+
+	public AsyncMapStore()
+	{
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "AsyncMapStore");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+	}
+
+	// Writes a snapshot of bundle to the journal's map file and empties the
+	// journal. If the snapshot can't be written, the journal is kept and
+	// gets the records the snapshot would have included. Must be called on
+	// the thread that edits bundle. Returns null if the save has to wait for
+	// one that renumbers ids; it's queued once that one is done.
+	public Future<?> save(MapBundle bundle, final MapJournal journal,
+			final Callback callback)
+	{
+		if (journal.getRenumbering() == MapJournal.RENUMBER_WRITING)
+		{
+			journal.requestSnapshot();
+			return null;
+		}
+		// This is the snapshot a finished renumbering might ask for
+		settle(bundle, journal);
+		// The snapshot includes everything not written to the journal yet
+		final byte[] records = journal.takeForSnapshot();
+		final int generation = journal.getGeneration();
+		final FrozenPath[] snapshot = bundle.publish().paths;
+		final boolean renumber = hasDeleted(snapshot);
+		if (renumber)
+			journal.beginRenumbering();
+		final File file = journal.getMapFile();
+		return executor.submit(new Runnable()
+		{
+			public void run()
+			{
+				long start = Metrics.start();
+				boolean written = false;
+				IOException failure = null;
+				try
+				{
+					long crc = write(snapshot, file, callback);
+					written = true;
+					journal.reset(crc, file.length(),
+							renumber ? generation + 1 : generation);
+					SAVE_TIME.stop(start);
+				}
+				catch (IOException e)
+				{
+					if (!isCancel(e))
+					{
+						FAILURES.increment();
+						failure = e;
+					}
+				}
+				// The old snapshot is still in place, so its journal has to
+				// get the records after all. Any commits made since are
+				// queued behind this, so the order is kept.
+				if (!written)
+					append(journal, records, generation, callback);
+				// Before the callbacks, so the bundle can be settled from
+				// them
+				if (renumber)
+					journal.endRenumbering(written);
+				if (failure != null)
+					callback.onFailed(file, failure);
+				else if (written)
+					callback.onSaved(file);
+			}
+		});
+	}
+
+	// Makes the edits recorded since the last commit durable, usually by
+	// appending them to the journal. Must be called on the thread that edits
+	// bundle.
+	public Future<?> commit(MapBundle bundle, final MapJournal journal,
+			final Callback callback)
+	{
+		if (settle(bundle, journal))
+			return save(bundle, journal, callback);
+		if (journal.shouldCompact())
+		{
+			COMPACTIONS.increment();
+			return save(bundle, journal, callback);
+		}
+		final byte[] records = journal.takePending();
+		final int generation = journal.getGeneration();
+		if (records.length == 0)
+			return null;
+		return executor.submit(new Runnable()
+		{
+			public void run()
+			{
+				append(journal, records, generation, callback);
+			}
+		});
+	}
+
+	// Closes the journal once everything queued for it has been written
+	public void close(final MapJournal journal)
+	{
+		executor.submit(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					journal.close();
+				}
+				catch (IOException e)
+				{
+					// Everything written was already synced
+				}
+			}
+		});
+	}
+
+	public Future<?> load(final File file, final Callback callback)
+	{
+		return executor.submit(new Runnable()
+		{
+			public void run()
+			{
+				long start = Metrics.start();
+				try
+				{
+					// Repaired before the journal is replayed, its edits
+					// were made on a valid map
+					ArrayList<PathValidator.Violation> violations =
+							new ArrayList<PathValidator.Violation>();
+					MapBundle bundle = read(file, callback, violations);
+					if (!violations.isEmpty())
+					{
+						REPAIRS.add(violations.size());
+						callback.onRepaired(file, violations);
+					}
+					MapJournal journal = MapJournal.open(file, bundle,
+							MapJournal.checksum(file), file.length());
+					LOAD_TIME.stop(start);
+					callback.onLoaded(file, bundle, journal);
+				}
+				catch (IOException e)
+				{
+					if (!isCancel(e))
+					{
+						FAILURES.increment();
+						callback.onFailed(file, e);
+					}
+				}
+			}
+		});
+	}
+
+	// Lets queued tasks finish, but accepts no new ones
+	public void shutdown()
+	{
+		executor.shutdown();
+		loader.shutdown();
+	}
+
+	// Editing thread. Gives the bundle the ids of a renumbering snapshot once
+	// it's on disk. Returns whether the bundle has to be saved again.
+	private static boolean settle(MapBundle bundle, MapJournal journal)
+	{
+		int state = journal.getRenumbering();
+		if (state == MapJournal.RENUMBER_NONE
+				|| state == MapJournal.RENUMBER_WRITING)
+			return false;
+		if (state == MapJournal.RENUMBER_WRITTEN)
+			bundle.compact();
+		return journal.finishRenumbering();
+	}
+
+	private static boolean hasDeleted(FrozenPath[] snapshot)
+	{
+		for (FrozenPath p : snapshot)
+			if (p.deletedCount > 0)
+				return true;
+		return false;
+	}
+
+	private static void append(MapJournal journal, byte[] records,
+			int generation, Callback callback)
+	{
+		if (records.length == 0)
+			return;
+		long start = Metrics.start();
+		try
+		{
+			journal.append(records, generation);
+			APPEND_TIME.stop(start);
+			JOURNAL_BYTES.add(records.length);
+		}
+		catch (IOException e)
+		{
+			FAILURES.increment();
+			callback.onFailed(journal.getMapFile(), e);
+		}
+	}
+
+	// Returns the CRC32 of the written file. A binary map stays binary.
+	private static long write(FrozenPath[] snapshot, File file,
+			Callback callback) throws IOException
+	{
+		long total = 0;
+		int pathCount = 0;
+		for (FrozenPath p : snapshot)
+		{
+			total += p.size;
+			if (!p.isAllDeleted())
+				pathCount++;
+		}
+		long done = 0;
+		boolean binary = file.exists() && MapFiles.isBinary(file);
+
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(temp);
+		CheckedOutputStream checked = new CheckedOutputStream(out,
+				new CRC32());
+		boolean complete = false;
+		try
+		{
+			if (binary)
+			{
+				OutputStream buffered = new BufferedOutputStream(checked);
+				BinaryMapCodec.writeHeader(buffered, pathCount);
+				for (FrozenPath p : snapshot)
+				{
+					checkCancelled();
+					if (!p.isAllDeleted())
+						BinaryMapCodec.writePath(buffered, p,
+								p.getCompactedIds());
+					done += p.size;
+					callback.onProgress(done, total);
+				}
+				buffered.flush();
+			}
+			else
+			{
+				MapWriter writer = new MapWriter(checked);
+				writer.beginBundle();
+				for (FrozenPath p : snapshot)
+				{
+					if (p.isAllDeleted())
+					{
+						done += p.size;
+						continue;
+					}
+					int[] ids = p.getCompactedIds();
+					writer.beginPath();
+					for (int i = 0; i < p.size; i += PROGRESS_STEP)
+					{
+						checkCancelled();
+						int end = Math.min(p.size, i + PROGRESS_STEP);
+						writer.writeWaypoints(p, ids, i, end);
+						done += end - i;
+						callback.onProgress(done, total);
+					}
+					writer.endPath();
+				}
+				writer.endBundle();
+				writer.flush();
+			}
+			// Make sure the data is on disk before it replaces the old file
+			out.getFD().sync();
+			complete = true;
+		}
+		finally
+		{
+			out.close();
+			if (!complete)
+				temp.delete();
+		}
+		// renameTo won't replace an existing file everywhere
+		if (!temp.renameTo(file))
+		{
+			file.delete();
+			if (!temp.renameTo(file))
+				throw new IOException("Couldn't replace " + file);
+		}
+		return checked.getChecksum().getValue();
+	}
+
+	// Reads and repairs the map, adding what was repaired to repairs
+	private MapBundle read(File file, Callback callback,
+			ArrayList<PathValidator.Violation> repairs) throws IOException
+	{
+		if (MapFiles.isBinary(file))
+		{
+			MapBundle bundle = MapFiles.load(file, repairs);
+			callback.onProgress(file.length(), file.length());
+			return bundle;
+		}
+		if (file.length() >= PARALLEL_LOAD_SIZE)
+		{
+			// Only start and end can be reported, the paths finish out of order
+			callback.onProgress(0, file.length());
+			MapBundle bundle = loader.load(file, repairs);
+			callback.onProgress(file.length(), file.length());
+			return bundle;
+		}
+		Reader in = new ProgressReader(new BufferedReader(
+				new InputStreamReader(new FileInputStream(file),
+						Charset.forName("US-ASCII"))), file.length(), callback);
+		MapBundle bundle;
+		try
+		{
+			bundle = MapBundle.read(in);
+		}
+		finally
+		{
+			in.close();
+		}
+		new PathValidator(true).validate(bundle, repairs);
+		return bundle;
+	}
+
+	// cancel(true) comes out of the checks here as an InterruptedIOException,
+	// but as a ClosedByInterruptException if it hits FileChannel.map() or a
+	// channel read. Any other error is a real failure, even if a cancel
+	// came in meanwhile.
+	private static boolean isCancel(IOException e)
+	{
+		return e instanceof InterruptedIOException
+				|| e instanceof ClosedByInterruptException;
+	}
+
+	private static void checkCancelled() throws InterruptedIOException
+	{
+		if (Thread.currentThread().isInterrupted())
+			throw new InterruptedIOException("Cancelled");
+	}
+
+	// Reports how far a load has got, and stops it once cancelled
+	private static class ProgressReader extends FilterReader
+	{
+		private final long total;
+		private final Callback callback;
+		private long done = 0;
+		private long reported = 0;
+
+		ProgressReader(Reader in, long length, Callback progress)
+		{
+			super(in);
+			total = length;
+			callback = progress;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length)
+				throws IOException
+		{
+			checkCancelled();
+			int n = super.read(buffer, offset, length);
+			if (n > 0)
+			{
+				done += n;
+				if (done - reported >= PROGRESS_STEP)
+				{
+					reported = done;
+					callback.onProgress(done, total);
+				}
+			}
+			return n;
+		}
+	}
+}
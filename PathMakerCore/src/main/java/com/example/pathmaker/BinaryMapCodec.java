@@ -0,0 +1,284 @@
+
+package com.example.pathmaker;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class BinaryMapCodec
+{
+	public static final int VERSION = 1;
+	private static final byte[] MAGIC = { 'P', 'M', 'A', 'P' };
+
+	/*
+	 * Compact alternative to the bracketed text format. Layout:
+	 * 
+	 * magic "PMAP", version byte, varint path count, then for each path a
+	 * varint waypoint count followed by the waypoints in id order:
+	 * 
+	 * zigzag dx, zigzag dy, varint edge count, zigzag edge deltas
+	 * 
+	 * dx/dy are relative to the previous waypoint of the same path (strokes
+	 * are drawn point by point, so they're small). The first edge is stored
+	 * relative to the waypoint's own id and each following edge relative to
+	 * the previous one. Ids aren't stored since they are the list indices.
+	 * 
+	 * Like MapWriter, write() leaves out deleted waypoints and numbers the
+	 * rest as if their paths had been compacted.
+	 */
+
+	private BinaryMapCodec()
+	{
+	}
+
+	public static void write(MapBundle bundle, OutputStream output)
+			throws IOException
+	{
+		OutputStream out = new BufferedOutputStream(output);
+		out.write(MAGIC);
+		out.write(VERSION);
+		int pathCount = 0;
+		for (MapPath p : bundle.paths)
+		{
+			if (!p.isAllDeleted())
+				pathCount++;
+		}
+		writeVarint(out, pathCount);
+		for (MapPath p : bundle.paths)
+		{
+			if (p.isAllDeleted())
+				continue;
+			int[] ids = p.getCompactedIds();
+			int size = p.size();
+			writeVarint(out, size - p.getDeletedCount());
+			int lastX = 0;
+			int lastY = 0;
+			for (int i = 0; i < size; i++)
+			{
+				if (ids != null && ids[i] < 0)
+					continue;
+				Waypoint wp = p.getWaypoint(i);
+				writeVarint(out, zigzag(wp.x - lastX));
+				writeVarint(out, zigzag(wp.y - lastY));
+				lastX = wp.x;
+				lastY = wp.y;
+				int edgeCount = wp.getConnectionCount();
+				writeVarint(out, edgeCount);
+				int lastId = ids == null ? i : ids[i];
+				for (int j = 0; j < edgeCount; j++)
+				{
+					int id = wp.getConnectionId(j);
+					if (ids != null)
+						id = ids[id];
+					writeVarint(out, zigzag(id - lastId));
+					lastId = id;
+				}
+			}
+		}
+		out.flush();
+	}
+
+	// Frozen paths are written one at a time, so a save can report progress
+	// and stop in between. out should be buffered.
+
+	static void writeHeader(OutputStream out, int pathCount)
+			throws IOException
+	{
+		out.write(MAGIC);
+		out.write(VERSION);
+		writeVarint(out, pathCount);
+	}
+
+	// Writes path numbered as if it had been compacted, with ids from
+	// path.getCompactedIds()
+	static void writePath(OutputStream out, FrozenPath path, int[] ids)
+			throws IOException
+	{
+		writeVarint(out, path.size - path.deletedCount);
+		int lastX = 0;
+		int lastY = 0;
+		for (int i = 0; i < path.size; i++)
+		{
+			if (ids != null && ids[i] < 0)
+				continue;
+			writeVarint(out, zigzag(path.xs[i] - lastX));
+			writeVarint(out, zigzag(path.ys[i] - lastY));
+			lastX = path.xs[i];
+			lastY = path.ys[i];
+			int start = path.offsets[i];
+			int end = path.offsets[i + 1];
+			writeVarint(out, end - start);
+			int lastId = ids == null ? i : ids[i];
+			for (int e = start; e < end; e++)
+			{
+				int id = path.targets[e];
+				if (ids != null)
+					id = ids[id];
+				writeVarint(out, zigzag(id - lastId));
+				lastId = id;
+			}
+		}
+	}
+
+	// Decodes a bundle starting at in.position()
+	public static MapBundle read(ByteBuffer in) throws MapFormatException
+	{
+		int start = in.position();
+		try
+		{
+			if (!hasMagic(in))
+				throw new MapFormatException("not a binary map", start);
+			in.position(start + MAGIC.length);
+			int version = in.get() & 0xff;
+			if (version != VERSION)
+				throw new MapFormatException("unsupported version " + version,
+						in.position() - 1);
+			int pathCount = readCount(in);
+			ArrayList<MapPath> paths = new ArrayList<MapPath>(pathCount);
+			for (int p = 0; p < pathCount; p++)
+			{
+				int size = readCount(in);
+				ArrayList<Waypoint> waypoints = new ArrayList<Waypoint>(size);
+				int[] repeats = null;
+				int repeatCount = 0;
+				int x = 0;
+				int y = 0;
+				for (int i = 0; i < size; i++)
+				{
+					x += unzigzag(readVarint(in));
+					y += unzigzag(readVarint(in));
+					int edgeCount = readCount(in);
+					EdgeSet edges = new EdgeSet(edgeCount);
+					int id = i;
+					for (int j = 0; j < edgeCount; j++)
+					{
+						id += unzigzag(readVarint(in));
+						// Never written, but noted for PathValidator like
+						// the text format's repeats
+						if (!edges.add(id))
+						{
+							repeats = addRepeat(repeats, repeatCount, i, id);
+							repeatCount += 2;
+						}
+					}
+					waypoints.add(new Waypoint(x, y, i, edges));
+				}
+				MapPath path = new MapPath(waypoints);
+				if (repeatCount > 0)
+					path.repeatedEdges = Arrays.copyOf(repeats, repeatCount);
+				paths.add(path);
+			}
+			return new MapBundle(paths);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new MapFormatException("unexpected end of input",
+					in.position());
+		}
+	}
+
+	// Appends the pair to repeats, which holds count ints
+	private static int[] addRepeat(int[] repeats, int count, int from, int to)
+	{
+		if (repeats == null)
+			repeats = new int[8];
+		else if (count == repeats.length)
+			repeats = Arrays.copyOf(repeats, count * 2);
+		repeats[count] = from;
+		repeats[count + 1] = to;
+		return repeats;
+	}
+
+	// Maps the file into memory instead of copying it onto the heap
+	public static MapBundle load(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			return read(in);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	// Checks for the magic number without moving in's position
+	public static boolean hasMagic(ByteBuffer in)
+	{
+		int pos = in.position();
+		if (in.limit() - pos < MAGIC.length)
+			return false;
+		for (int i = 0; i < MAGIC.length; i++)
+		{
+			if (in.get(pos + i) != MAGIC[i])
+				return false;
+		}
+		return true;
+	}
+
+	public static boolean hasMagic(byte[] header, int length)
+	{
+		return hasMagic(ByteBuffer.wrap(header, 0, length));
+	}
+
+	private static int zigzag(int n)
+	{
+		return (n << 1) ^ (n >> 31);
+	}
+
+	private static int unzigzag(int n)
+	{
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	private static void writeVarint(OutputStream out, int value)
+			throws IOException
+	{
+		while ((value & ~0x7f) != 0)
+		{
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	// At most 5 bytes, and the last of 5 may only hold the top 4 bits of the
+	// int. Anything longer is corrupt rather than a value to wrap around.
+	private static int readVarint(ByteBuffer in) throws MapFormatException
+	{
+		int start = in.position();
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			int b = in.get();
+			if (shift == 28 && (b & 0x70) != 0)
+				throw new MapFormatException("varint out of range", start);
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new MapFormatException("malformed varint", start);
+	}
+
+	// Counts are used to presize lists, so sanity check them against the
+	// bytes that are left (every element takes at least one byte)
+	private static int readCount(ByteBuffer in) throws MapFormatException
+	{
+		int start = in.position();
+		int count = readVarint(in);
+		if (count < 0 || count > in.remaining())
+			throw new MapFormatException("bad count " + count, start);
+		return count;
+	}
+}
@@ -0,0 +1,209 @@
+
+package com.example.pathmaker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class ContractionHierarchy
+{
+	private static final int MAGIC = 0x504d4348; // "PMCH"
+	private static final int VERSION = 1;
+	// Marks an edge of the original path rather than a shortcut
+	static final int NO_MIDDLE = -1;
+
+	/*
+	 * Routing structure for one path, built ahead of time by
+	 * HierarchyBuilder and searched by HierarchyQuery. Every waypoint got a
+	 * rank (the order waypoints were contracted in) and contracting a
+	 * waypoint added shortcut edges between its neighbours wherever it lay
+	 * on their only shortest connection. Only the upward edges are kept:
+	 * waypoint i's edges to higher ranked waypoints are
+	 * targets[offsets[i]] up to targets[offsets[i + 1]], each with its length
+	 * and, for shortcuts, the waypoint it skips over (NO_MIDDLE otherwise).
+	 * 
+	 * Each connection is stored once, in the lower ranked waypoint's edges.
+	 * A shortcut's two halves are therefore both among the edges of its
+	 * middle waypoint, which is what unpacking relies on.
+	 * 
+	 * The hierarchies of a whole map are saved next to it as <name>.ch,
+	 * together with the CRC32 of the map file they were built from. A
+	 * hierarchy only describes the map file, not edits journaled since.
+	 */
+
+	public final int size;
+	final int[] offsets;
+	final int[] targets;
+	final float[] weights;
+	final int[] middles;
+
+	ContractionHierarchy(int[] offsets, int[] targets, float[] weights,
+			int[] middles)
+	{
+		size = offsets.length - 1;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.middles = middles;
+	}
+
+	public int getEdgeCount()
+	{
+		return offsets[size];
+	}
+
+	public int getShortcutCount()
+	{
+		int count = 0;
+		for (int e = 0; e < offsets[size]; e++)
+		{
+			if (middles[e] != NO_MIDDLE)
+				count++;
+		}
+		return count;
+	}
+
+	// Index of the edge connecting a and b, -1 if there is none
+	int findEdge(int a, int b)
+	{
+		for (int e = offsets[a]; e < offsets[a + 1]; e++)
+		{
+			if (targets[e] == b)
+				return e;
+		}
+		for (int e = offsets[b]; e < offsets[b + 1]; e++)
+		{
+			if (targets[e] == a)
+				return e;
+		}
+		return -1;
+	}
+
+	public static File getFile(File mapFile)
+	{
+		return new File(mapFile.getPath() + ".ch");
+	}
+
+	// Writes the hierarchies of all of mapFile's paths (in the map's order)
+	// next to it
+	public static void save(File mapFile, ContractionHierarchy[] hierarchies)
+			throws IOException
+	{
+		long crc = MapJournal.checksum(mapFile);
+		File file = getFile(mapFile);
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream stream = new FileOutputStream(temp);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				stream, 64 * 1024));
+		boolean complete = false;
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeLong(crc);
+			out.writeInt(hierarchies.length);
+			for (ContractionHierarchy h : hierarchies)
+			{
+				out.writeInt(h.size);
+				out.writeInt(h.getEdgeCount());
+				for (int i = 0; i <= h.size; i++)
+					out.writeInt(h.offsets[i]);
+				for (int e = 0; e < h.getEdgeCount(); e++)
+					out.writeInt(h.targets[e]);
+				for (int e = 0; e < h.getEdgeCount(); e++)
+					out.writeFloat(h.weights[e]);
+				for (int e = 0; e < h.getEdgeCount(); e++)
+					out.writeInt(h.middles[e]);
+			}
+			out.flush();
+			stream.getFD().sync();
+			complete = true;
+		}
+		finally
+		{
+			out.close();
+			if (!complete)
+				temp.delete();
+		}
+		if (!temp.renameTo(file))
+		{
+			file.delete();
+			if (!temp.renameTo(file))
+				throw new IOException("Couldn't replace " + file);
+		}
+	}
+
+	// Reads the hierarchies saved for mapFile. Returns null if there are
+	// none, or if they were built from a different version of the map.
+	public static ContractionHierarchy[] load(File mapFile)
+			throws IOException
+	{
+		File file = getFile(mapFile);
+		if (!file.exists())
+			return null;
+		FileInputStream stream = new FileInputStream(file);
+		try
+		{
+			FileChannel channel = stream.getChannel();
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			if (in.remaining() < 17 || in.getInt() != MAGIC
+					|| in.get() != VERSION)
+				throw new MapFormatException("Not a hierarchy file", 0);
+			if (in.getLong() != MapJournal.checksum(mapFile))
+				return null;
+			// Every hierarchy takes at least 12 bytes, which bounds the
+			// count before anything is allocated for it
+			int count = in.getInt();
+			if (count < 0 || count > in.remaining() / 12)
+				throw new MapFormatException("bad hierarchy count " + count,
+						in.position() - 4);
+			ContractionHierarchy[] hierarchies =
+					new ContractionHierarchy[count];
+			for (int i = 0; i < hierarchies.length; i++)
+				hierarchies[i] = read(in);
+			return hierarchies;
+		}
+		catch (RuntimeException e)
+		{
+			// Buffer underflows, negative sizes and the like
+			throw new MapFormatException("Corrupt hierarchy file: " + e, 0);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	private static ContractionHierarchy read(ByteBuffer in)
+			throws MapFormatException
+	{
+		int start = in.position();
+		int size = in.getInt();
+		int edges = in.getInt();
+		if (size < 0 || edges < 0
+				|| 4L * (size + 1) + 12L * edges > in.remaining())
+			throw new MapFormatException("bad hierarchy size " + size + ", "
+					+ edges + " edges", start);
+		int[] offsets = new int[size + 1];
+		int[] targets = new int[edges];
+		float[] weights = new float[edges];
+		int[] middles = new int[edges];
+		// Bulk reads through views, the file is big endian like the buffer
+		in.asIntBuffer().get(offsets);
+		in.position(in.position() + 4 * offsets.length);
+		in.asIntBuffer().get(targets);
+		in.position(in.position() + 4 * edges);
+		in.asFloatBuffer().get(weights);
+		in.position(in.position() + 4 * edges);
+		in.asIntBuffer().get(middles);
+		in.position(in.position() + 4 * edges);
+		return new ContractionHierarchy(offsets, targets, weights, middles);
+	}
+}
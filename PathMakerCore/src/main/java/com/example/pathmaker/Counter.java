@@ -0,0 +1,40 @@
+
+package com.example.pathmaker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Counter
+{
+	/*
+	 * A count of events, safe to bump from any thread. Get one through
+	 * Metrics.counter(); while metrics are disabled add() does nothing.
+	 */
+
+	private final AtomicLong value = new AtomicLong();
+
+	Counter()
+	{
+	}
+
+	public void increment()
+	{
+		if (Metrics.enabled)
+			value.incrementAndGet();
+	}
+
+	public void add(long amount)
+	{
+		if (Metrics.enabled)
+			value.addAndGet(amount);
+	}
+
+	public long get()
+	{
+		return value.get();
+	}
+
+	void reset()
+	{
+		value.set(0);
+	}
+}
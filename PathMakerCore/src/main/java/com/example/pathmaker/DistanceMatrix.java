@@ -0,0 +1,216 @@
+
+package com.example.pathmaker;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DistanceMatrix
+{
+	/*
+	 * Shortest route lengths between every source and every target on one
+	 * path. Each source gets a single Dijkstra search that stops once all
+	 * targets are settled, so a matrix costs one search per source rather
+	 * than one per pair.
+	 * 
+	 * The sources are spread over a fixed pool of worker threads. Every
+	 * thread owns its scratch arrays (reused like RouteFinder's, so they're
+	 * never cleared) and takes the next unclaimed source from a shared
+	 * counter until none are left, which keeps the workers evenly loaded
+	 * when some searches take longer than others. Workers only read the
+	 * FrozenPath and each writes its own rows of the result, so they share
+	 * no mutable state besides the counter. (Android before API 21 has no
+	 * ForkJoinPool; for independent searches a plain pool does the same job.)
+	 */
+
+	private final ExecutorService executor;
+	private final int threads;
+	private final ThreadLocal<Search> searches = new ThreadLocal<Search>()
+	{
+		@Override
+		protected Search initialValue()
+		{
+			return new Search();
+		}
+	};
+
+	// One worker per available processor
+	public DistanceMatrix()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public DistanceMatrix(int threadCount)
+	{
+		threads = Math.max(1, threadCount);
+		final AtomicInteger count = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory()
+				{
+					public Thread newThread(Runnable r)
+					{
+						Thread t = new Thread(r, "DistanceMatrix-"
+								+ count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	public int getThreadCount()
+	{
+		return threads;
+	}
+
+	// matrix[i][j] is the length of the shortest route from sources[i] to
+	// targets[j], or Float.POSITIVE_INFINITY if there is none. One matrix
+	// is computed at a time; concurrent calls wait for each other.
+	public synchronized float[][] compute(FrozenPath path, int[] sources,
+			int[] targets) throws InterruptedException
+	{
+		for (int id : sources)
+			check(path, id);
+		for (int id : targets)
+			check(path, id);
+
+		float[][] matrix = new float[sources.length][];
+		AtomicInteger next = new AtomicInteger();
+		int used = Math.min(threads, sources.length);
+		ArrayList<Future<Void>> running = new ArrayList<Future<Void>>(used);
+		for (int i = 0; i < used; i++)
+		{
+			running.add(executor.submit(new Worker(path, sources, targets,
+					matrix, next)));
+		}
+		try
+		{
+			for (Future<Void> f : running)
+				f.get();
+		}
+		catch (ExecutionException e)
+		{
+			// The searches don't throw anything checked
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			for (Future<Void> f : running)
+				f.cancel(true);
+		}
+		return matrix;
+	}
+
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	private static void check(FrozenPath path, int id)
+	{
+		if (id < 0 || id >= path.size)
+			throw new IndexOutOfBoundsException("No waypoint " + id
+					+ " in path of size " + path.size);
+	}
+
+	// Claims sources and fills in their rows until none are left
+	private class Worker implements Callable<Void>
+	{
+		private final FrozenPath path;
+		private final int[] sources;
+		private final int[] targets;
+		private final float[][] matrix;
+		private final AtomicInteger next;
+
+		Worker(FrozenPath p, int[] s, int[] t, float[][] m,
+				AtomicInteger counter)
+		{
+			path = p;
+			sources = s;
+			targets = t;
+			matrix = m;
+			next = counter;
+		}
+
+		public Void call()
+		{
+			Search search = searches.get();
+			int i;
+			while ((i = next.getAndIncrement()) < sources.length)
+			{
+				if (Thread.currentThread().isInterrupted())
+					break;
+				matrix[i] = search.run(path, sources[i], targets);
+			}
+			return null;
+		}
+	}
+
+	// Scratch state of one thread's searches
+	private static class Search
+	{
+		private final VisitMarker reached = new VisitMarker();
+		private final VisitMarker wanted = new VisitMarker();
+		private final IntMinHeap queue = new IntMinHeap();
+		private float[] dist = new float[0];
+
+		// Dijkstra from source until every target is settled
+		float[] run(FrozenPath path, int source, int[] targets)
+		{
+			int size = path.size;
+			if (dist.length < size)
+				dist = new float[size];
+			reached.begin(size);
+			wanted.begin(size);
+			queue.clear(size);
+			int remaining = 0;
+			for (int id : targets)
+			{
+				if (wanted.visit(id))
+					remaining++;
+			}
+			int[] offsets = path.offsets;
+			int[] edgeTargets = path.targets;
+			float[] lengths = path.lengths;
+			reached.visit(source);
+			dist[source] = 0f;
+			queue.push(source, 0f);
+			while (!queue.isEmpty() && remaining > 0)
+			{
+				int x = queue.pop();
+				if (wanted.isVisited(x))
+					remaining--;
+				float d = dist[x];
+				int end = offsets[x + 1];
+				for (int e = offsets[x]; e < end; e++)
+				{
+					int y = edgeTargets[e];
+					float nd = d + lengths[e];
+					if (reached.visit(y))
+					{
+						dist[y] = nd;
+						queue.push(y, nd);
+					}
+					else if (nd < dist[y] && queue.contains(y))
+					{
+						dist[y] = nd;
+						queue.update(y, nd);
+					}
+				}
+			}
+
+			float[] row = new float[targets.length];
+			for (int j = 0; j < targets.length; j++)
+			{
+				int id = targets[j];
+				row[j] = reached.isVisited(id) ? dist[id]
+						: Float.POSITIVE_INFINITY;
+			}
+			return row;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+
+package com.example.pathmaker;
+
+public class DrawList
+{
+	/*
+	 * Packed geometry of one path, laid out the way Canvas.drawLines and
+	 * Canvas.drawPoints expect it: segments holds x0, y0, x1, y1 for each
+	 * line and points holds x, y for each waypoint. Only the first
+	 * segmentFloats and pointFloats entries are valid, the arrays are reused
+	 * and may be longer. Coordinates are in map (image) space.
+	 */
+
+	public float[] segments = new float[0];
+	public int segmentFloats = 0;
+	public float[] points = new float[0];
+	public int pointFloats = 0;
+
+	public int getSegmentCount()
+	{
+		return segmentFloats / 4;
+	}
+
+	public int getPointCount()
+	{
+		return pointFloats / 2;
+	}
+
+	public void clear()
+	{
+		segmentFloats = 0;
+		pointFloats = 0;
+	}
+
+	void addSegment(float x0, float y0, float x1, float y1)
+	{
+		if (segmentFloats + 4 > segments.length)
+			segments = grow(segments, segmentFloats + 4);
+		segments[segmentFloats++] = x0;
+		segments[segmentFloats++] = y0;
+		segments[segmentFloats++] = x1;
+		segments[segmentFloats++] = y1;
+	}
+
+	void addPoint(float x, float y)
+	{
+		if (pointFloats + 2 > points.length)
+			points = grow(points, pointFloats + 2);
+		points[pointFloats++] = x;
+		points[pointFloats++] = y;
+	}
+
+	private static float[] grow(float[] array, int needed)
+	{
+		float[] bigger = new float[Math.max(needed, array.length * 2)];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+}
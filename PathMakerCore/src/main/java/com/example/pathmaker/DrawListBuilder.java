@@ -0,0 +1,81 @@
+
+package com.example.pathmaker;
+
+public class DrawListBuilder
+{
+	/*
+	 * Turns a path into a DrawList by walking it from the root with an
+	 * explicit stack (long strokes used to overflow the thread stack when this
+	 * was recursive). Every reachable waypoint becomes one point and every
+	 * connection one segment: since connections always go both ways, an edge
+	 * is only emitted from the endpoint that is processed first, and repeated
+	 * edges in the same waypoint's list are skipped, so shared segments
+	 * aren't drawn twice.
+	 * 
+	 * Deleting waypoints can split a path (or remove its root), so after the
+	 * walk from the root every waypoint not reached yet starts a walk of its
+	 * own. Deleted waypoints are skipped.
+	 * 
+	 * Scratch arrays are kept between builds. Not thread safe.
+	 */
+
+	private final VisitMarker discovered = new VisitMarker();
+	private final VisitMarker processed = new VisitMarker();
+	// Ids the waypoint being processed has emitted an edge to, used to spot
+	// duplicate edges
+	private final VisitMarker emitted = new VisitMarker();
+	private int[] stack = new int[0];
+
+	public void build(FrozenPath path, DrawList out)
+	{
+		out.clear();
+		int size = path.size;
+		if (size == 0)
+			return;
+		prepare(size);
+		for (int root = 0; root < size; root++)
+		{
+			if (!path.isDeleted(root) && discovered.visit(root))
+				walk(path, root, out);
+		}
+	}
+
+	// Emits everything reachable from root, which must be discovered
+	private void walk(FrozenPath path, int root, DrawList out)
+	{
+		int[] xs = path.xs;
+		int[] ys = path.ys;
+		int[] offsets = path.offsets;
+		int[] targets = path.targets;
+		int size = path.size;
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0)
+		{
+			int current = stack[--top];
+			processed.visit(current);
+			emitted.begin(size);
+			out.addPoint(xs[current], ys[current]);
+
+			int end = offsets[current + 1];
+			for (int e = offsets[current]; e < end; e++)
+			{
+				int next = targets[e];
+				if (next == current || processed.isVisited(next)
+						|| !emitted.visit(next))
+					continue;
+				out.addSegment(xs[current], ys[current], xs[next], ys[next]);
+				if (discovered.visit(next))
+					stack[top++] = next;
+			}
+		}
+	}
+
+	private void prepare(int size)
+	{
+		discovered.begin(size);
+		processed.begin(size);
+		if (stack.length < size)
+			stack = new int[size];
+	}
+}
@@ -0,0 +1,146 @@
+
+package com.example.pathmaker;
+
+import java.util.Arrays;
+
+public class EdgeSet
+{
+	private static final int INLINE_LIMIT = 8;
+
+	/*
+	 * The connections of one waypoint, as plain ints in the order they were
+	 * added (which is also the order they are saved in). Most waypoints only
+	 * have two or three connections, so up to INLINE_LIMIT a linear scan of
+	 * the array is the fastest membership test. Past that an open addressing
+	 * hash table of positions is built on the side so that contains() and
+	 * add() stay O(1) for junctions with many connections.
+	 */
+
+	private int[] ids;
+	private int size = 0;
+	// Slots hold position + 1 in ids, 0 marks an empty slot
+	private int[] table = null;
+
+	public EdgeSet()
+	{
+		ids = new int[2];
+	}
+
+	public EdgeSet(int capacity)
+	{
+		ids = new int[Math.max(capacity, 1)];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public int get(int index)
+	{
+		if (index >= size)
+			throw new IndexOutOfBoundsException("Index " + index
+					+ ", size " + size);
+		return ids[index];
+	}
+
+	public boolean contains(int id)
+	{
+		if (table == null)
+		{
+			for (int i = 0; i < size; i++)
+			{
+				if (ids[i] == id)
+					return true;
+			}
+			return false;
+		}
+		return table[find(id)] != 0;
+	}
+
+	// Returns false (and changes nothing) if id is already in the set
+	public boolean add(int id)
+	{
+		if (contains(id))
+			return false;
+		if (size == ids.length)
+			ids = Arrays.copyOf(ids, size * 2);
+		ids[size++] = id;
+		if (table != null)
+		{
+			if (size * 2 > table.length)
+				rehash();
+			else
+				table[find(id)] = size;
+		}
+		else if (size > INLINE_LIMIT)
+			rehash();
+		return true;
+	}
+
+	// Removes id, keeping the order of the others. Returns false if id
+	// wasn't in the set.
+	public boolean remove(int id)
+	{
+		int index = -1;
+		for (int i = 0; i < size; i++)
+		{
+			if (ids[i] == id)
+			{
+				index = i;
+				break;
+			}
+		}
+		if (index < 0)
+			return false;
+		System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+		size--;
+		// Positions after index have all moved down
+		if (table != null)
+			rehash();
+		return true;
+	}
+
+	public void clear()
+	{
+		size = 0;
+		table = null;
+	}
+
+	// Replaces every id with remap[id], used when a path is compacted
+	public void remapAll(int[] remap)
+	{
+		for (int i = 0; i < size; i++)
+			ids[i] = remap[ids[i]];
+		if (table != null)
+			rehash();
+	}
+
+	// Shifts every id, used when a path is integrated into another
+	public void offsetAll(int amount)
+	{
+		for (int i = 0; i < size; i++)
+			ids[i] += amount;
+		if (table != null)
+			rehash();
+	}
+
+	// Slot holding id, or the empty slot where it would go
+	private int find(int id)
+	{
+		int mask = table.length - 1;
+		int hash = id * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (table[slot] != 0 && ids[table[slot] - 1] != id)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void rehash()
+	{
+		int capacity = Integer.highestOneBit(size * 4 - 1);
+		table = new int[Math.max(capacity, 16)];
+		for (int i = 0; i < size; i++)
+			table[find(ids[i])] = i + 1;
+	}
+}
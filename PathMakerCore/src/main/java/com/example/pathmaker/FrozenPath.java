@@ -0,0 +1,122 @@
+
+package com.example.pathmaker;
+
+public class FrozenPath
+{
+	/*
+	 * Read-only copy of a MapPath in compressed sparse row form: waypoint i is
+	 * at (xs[i], ys[i]) and its edges are targets[offsets[i]] up to (but not
+	 * including) targets[offsets[i + 1]], with the matching straight line
+	 * lengths in lengths[]. Everything sits in a few flat arrays instead of
+	 * one object per waypoint and edge, which is much friendlier to the cache
+	 * when walking the whole graph.
+	 * 
+	 * Deleted waypoints (see MapPath) keep their place and coordinates but
+	 * have no edges; isDeleted() tells them apart.
+	 * 
+	 * The arrays are never modified once built, so a FrozenPath can be shared
+	 * with other threads. Get one through MapPath.freeze().
+	 */
+
+	public final int size;
+	public final int[] xs;
+	public final int[] ys;
+	public final int[] offsets;
+	public final int[] targets;
+	public final float[] lengths;
+	public final int deletedCount;
+	// One bit per deleted waypoint, null if there are none
+	private final long[] deleted;
+
+	// Not private so tests can build paths that MapPath never produces, such
+	// as ones with repeated edges
+	FrozenPath(int[] x, int[] y, int[] off, int[] tgt, float[] len,
+			long[] del, int delCount)
+	{
+		size = x.length;
+		xs = x;
+		ys = y;
+		offsets = off;
+		targets = tgt;
+		lengths = len;
+		deleted = del;
+		deletedCount = delCount;
+	}
+
+	public int getEdgeCount()
+	{
+		return offsets[size];
+	}
+
+	// See MapPath.getCompactedIds()
+	public int[] getCompactedIds()
+	{
+		return deletedCount == 0 ? null : MapPath.compactedIds(deleted, size);
+	}
+
+	public boolean isAllDeleted()
+	{
+		return deletedCount > 0 && deletedCount == size;
+	}
+
+	public boolean isDeleted(int id)
+	{
+		return deleted != null && (id >>> 6) < deleted.length
+				&& (deleted[id >>> 6] & (1L << id)) != 0;
+	}
+
+	// Builds path's arrays, reusing the data of waypoints below keepBelow
+	// from previous (which must have been built from the same path)
+	static FrozenPath build(MapPath path, FrozenPath previous, int keepBelow)
+	{
+		int size = path.size();
+		int keep = 0;
+		if (previous != null)
+			keep = Math.max(0, Math.min(keepBelow, Math.min(size,
+					previous.size)));
+
+		int edgeCount = keep == 0 ? 0 : previous.offsets[keep];
+		for (int i = keep; i < size; i++)
+			edgeCount += path.getWaypoint(i).getConnectionCount();
+
+		int[] xs = new int[size];
+		int[] ys = new int[size];
+		int[] offsets = new int[size + 1];
+		int[] targets = new int[edgeCount];
+		float[] lengths = new float[edgeCount];
+		if (keep > 0)
+		{
+			int keptEdges = previous.offsets[keep];
+			System.arraycopy(previous.xs, 0, xs, 0, keep);
+			System.arraycopy(previous.ys, 0, ys, 0, keep);
+			System.arraycopy(previous.offsets, 0, offsets, 0, keep + 1);
+			System.arraycopy(previous.targets, 0, targets, 0, keptEdges);
+			System.arraycopy(previous.lengths, 0, lengths, 0, keptEdges);
+		}
+		for (int i = keep; i < size; i++)
+		{
+			Waypoint wp = path.getWaypoint(i);
+			xs[i] = wp.x;
+			ys[i] = wp.y;
+		}
+
+		int e = offsets[keep];
+		for (int i = keep; i < size; i++)
+		{
+			Waypoint wp = path.getWaypoint(i);
+			int count = wp.getConnectionCount();
+			for (int j = 0; j < count; j++)
+			{
+				int to = wp.getConnectionId(j);
+				float dx = xs[to] - xs[i];
+				float dy = ys[to] - ys[i];
+				targets[e] = to;
+				lengths[e] = (float) Math.sqrt(dx * dx + dy * dy);
+				e++;
+			}
+			offsets[i + 1] = e;
+		}
+		return new FrozenPath(xs, ys, offsets, targets, lengths,
+				path.copyDeleted(), path.getDeletedCount());
+	}
+}
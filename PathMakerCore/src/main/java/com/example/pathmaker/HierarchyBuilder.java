@@ -0,0 +1,317 @@
+
+package com.example.pathmaker;
+
+import java.util.Arrays;
+
+public class HierarchyBuilder
+{
+	private static final int NO_MIDDLE = ContractionHierarchy.NO_MIDDLE;
+	// Witness searches give up after settling this many waypoints. Giving up
+	// early only costs an unneeded shortcut, never a wrong route.
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	/*
+	 * Builds a ContractionHierarchy by contracting the waypoints of a path
+	 * one at a time, least important first. Contracting waypoint v removes
+	 * it from the graph; for each pair of its remaining neighbours u and w
+	 * a shortcut u-w (of length u-v-w) is added, unless a short local search
+	 * (the witness search) finds another way from u to w that is no longer.
+	 * 
+	 * Importance is twice the edge difference (shortcuts added minus edges
+	 * removed) plus the number of neighbours already contracted, which
+	 * spreads contraction evenly over the map. Priorities are only updated
+	 * lazily: the waypoint at the top of the queue is re-evaluated, and only
+	 * contracted if it's still the least important. Also re-evaluating the
+	 * neighbours of every contracted waypoint made building several times
+	 * slower on large maps without making queries any faster.
+	 * 
+	 * Long strokes are chains of waypoints with two connections each, which
+	 * contract without any shortcuts of their own, so building stays close
+	 * to linear for maps drawn in the app. This is meant to run offline (see
+	 * BuildHierarchies in PathMakerBench); a builder isn't thread safe but
+	 * can be reused.
+	 */
+
+	// Live graph: the uncontracted neighbours of every waypoint
+	private int[][] adjTargets;
+	private float[][] adjWeights;
+	private int[][] adjMiddles;
+	private int[] degree;
+	private int[] contractedNeighbours;
+
+	// Contraction order: the waypoints not contracted yet, on priority
+	private int[] priority;
+	private final IntMinHeap queue = new IntMinHeap();
+
+	// Witness search state, reused like RouteFinder's
+	private final VisitMarker reached = new VisitMarker();
+	private final VisitMarker goal = new VisitMarker();
+	private final IntMinHeap witness = new IntMinHeap();
+	private float[] dist = new float[0];
+
+	// Shortcuts found by the last evaluation: from, to, weight
+	private int[] shortcutFrom = new int[16];
+	private int[] shortcutTo = new int[16];
+	private float[] shortcutWeight = new float[16];
+	private int shortcutCount;
+
+	public ContractionHierarchy[] build(MapSnapshot snapshot)
+	{
+		ContractionHierarchy[] hierarchies =
+				new ContractionHierarchy[snapshot.getPathCount()];
+		for (int i = 0; i < hierarchies.length; i++)
+			hierarchies[i] = build(snapshot.getPath(i));
+		return hierarchies;
+	}
+
+	public ContractionHierarchy build(FrozenPath path)
+	{
+		int size = path.size;
+		init(path);
+
+		queue.clear(size);
+		for (int v = 0; v < size; v++)
+		{
+			priority[v] = evaluate(v);
+			queue.push(v, priority[v]);
+		}
+
+		// Once contracted, a waypoint's remaining adjacency is exactly its
+		// upward edges, so it's kept as is
+		int[][] upTargets = new int[size][];
+		float[][] upWeights = new float[size][];
+		int[][] upMiddles = new int[size][];
+		while (!queue.isEmpty())
+		{
+			int v = queue.peek();
+			int p = evaluate(v);
+			if (p > priority[v])
+			{
+				priority[v] = p;
+				queue.update(v, p);
+				continue;
+			}
+			queue.pop();
+			contract(v);
+			upTargets[v] = adjTargets[v];
+			upWeights[v] = adjWeights[v];
+			upMiddles[v] = adjMiddles[v];
+		}
+		return flatten(upTargets, upWeights, upMiddles);
+	}
+
+	private void init(FrozenPath path)
+	{
+		int size = path.size;
+		adjTargets = new int[size][];
+		adjWeights = new float[size][];
+		adjMiddles = new int[size][];
+		degree = new int[size];
+		contractedNeighbours = new int[size];
+		priority = new int[size];
+		if (dist.length < size)
+			dist = new float[size];
+		for (int v = 0; v < size; v++)
+		{
+			int count = path.offsets[v + 1] - path.offsets[v];
+			adjTargets[v] = new int[Math.max(count, 2)];
+			adjWeights[v] = new float[adjTargets[v].length];
+			adjMiddles[v] = new int[adjTargets[v].length];
+		}
+		for (int v = 0; v < size; v++)
+		{
+			for (int e = path.offsets[v]; e < path.offsets[v + 1]; e++)
+			{
+				int w = path.targets[e];
+				// Connections are stored both ways, add each once
+				if (w > v)
+					connect(v, w, path.lengths[e], NO_MIDDLE);
+			}
+		}
+	}
+
+	// Adds the edge a-b, or shortens it if it already exists and is longer
+	private void connect(int a, int b, float weight, int middle)
+	{
+		int i = indexOf(a, b);
+		if (i < 0)
+		{
+			append(a, b, weight, middle);
+			append(b, a, weight, middle);
+		}
+		else if (weight < adjWeights[a][i])
+		{
+			adjWeights[a][i] = weight;
+			adjMiddles[a][i] = middle;
+			int j = indexOf(b, a);
+			adjWeights[b][j] = weight;
+			adjMiddles[b][j] = middle;
+		}
+	}
+
+	private int indexOf(int a, int b)
+	{
+		int[] targets = adjTargets[a];
+		for (int i = 0; i < degree[a]; i++)
+		{
+			if (targets[i] == b)
+				return i;
+		}
+		return -1;
+	}
+
+	private void append(int a, int b, float weight, int middle)
+	{
+		int n = degree[a];
+		if (n == adjTargets[a].length)
+		{
+			adjTargets[a] = Arrays.copyOf(adjTargets[a], n * 2);
+			adjWeights[a] = Arrays.copyOf(adjWeights[a], n * 2);
+			adjMiddles[a] = Arrays.copyOf(adjMiddles[a], n * 2);
+		}
+		adjTargets[a][n] = b;
+		adjWeights[a][n] = weight;
+		adjMiddles[a][n] = middle;
+		degree[a] = n + 1;
+	}
+
+	// Removes a from b's neighbours (order doesn't matter, so the last one
+	// takes its place)
+	private void detach(int b, int a)
+	{
+		int i = indexOf(b, a);
+		int last = --degree[b];
+		adjTargets[b][i] = adjTargets[b][last];
+		adjWeights[b][i] = adjWeights[b][last];
+		adjMiddles[b][i] = adjMiddles[b][last];
+	}
+
+	// Works out the shortcuts contracting v would need and returns v's
+	// priority
+	private int evaluate(int v)
+	{
+		shortcutCount = 0;
+		int n = degree[v];
+		int[] targets = adjTargets[v];
+		float[] weights = adjWeights[v];
+		for (int i = 0; i < n - 1; i++)
+		{
+			float maxWeight = 0f;
+			for (int j = i + 1; j < n; j++)
+				maxWeight = Math.max(maxWeight, weights[j]);
+			witnessSearch(targets[i], v, weights[i] + maxWeight, targets,
+					i + 1, n);
+			for (int j = i + 1; j < n; j++)
+			{
+				float via = weights[i] + weights[j];
+				int w = targets[j];
+				if (!reached.isVisited(w) || dist[w] > via)
+					addShortcut(targets[i], w, via);
+			}
+		}
+		return 2 * (shortcutCount - n) + contractedNeighbours[v];
+	}
+
+	private void addShortcut(int from, int to, float weight)
+	{
+		if (shortcutCount == shortcutFrom.length)
+		{
+			int capacity = shortcutCount * 2;
+			shortcutFrom = Arrays.copyOf(shortcutFrom, capacity);
+			shortcutTo = Arrays.copyOf(shortcutTo, capacity);
+			shortcutWeight = Arrays.copyOf(shortcutWeight, capacity);
+		}
+		shortcutFrom[shortcutCount] = from;
+		shortcutTo[shortcutCount] = to;
+		shortcutWeight[shortcutCount] = weight;
+		shortcutCount++;
+	}
+
+	// Removes v from the graph, adding the shortcuts found by the
+	// evaluate(v) just before
+	private void contract(int v)
+	{
+		for (int i = 0; i < degree[v]; i++)
+		{
+			int u = adjTargets[v][i];
+			detach(u, v);
+			contractedNeighbours[u]++;
+		}
+		for (int s = 0; s < shortcutCount; s++)
+			connect(shortcutFrom[s], shortcutTo[s], shortcutWeight[s], v);
+	}
+
+	// Dijkstra from source over uncontracted waypoints other than skip,
+	// until goals[goalsFrom] to goals[goalsTo - 1] are all settled, or up to
+	// maxDist or WITNESS_SETTLE_LIMIT settled waypoints. Leaves the
+	// distances found in dist[] (valid where reached).
+	private void witnessSearch(int source, int skip, float maxDist,
+			int[] goals, int goalsFrom, int goalsTo)
+	{
+		int size = adjTargets.length;
+		reached.begin(size);
+		witness.clear(size);
+		// The search can stop once every goal is settled
+		goal.begin(size);
+		for (int i = goalsFrom; i < goalsTo; i++)
+			goal.visit(goals[i]);
+		int goalsLeft = goalsTo - goalsFrom;
+		reached.visit(source);
+		dist[source] = 0f;
+		witness.push(source, 0f);
+		int settled = 0;
+		while (!witness.isEmpty() && settled < WITNESS_SETTLE_LIMIT)
+		{
+			float d = witness.minKey();
+			if (d > maxDist)
+				break;
+			int x = witness.pop();
+			settled++;
+			if (goal.isVisited(x) && --goalsLeft == 0)
+				break;
+			int[] targets = adjTargets[x];
+			float[] weights = adjWeights[x];
+			for (int i = 0; i < degree[x]; i++)
+			{
+				int y = targets[i];
+				if (y == skip)
+					continue;
+				float nd = d + weights[i];
+				if (reached.visit(y))
+				{
+					dist[y] = nd;
+					witness.push(y, nd);
+				}
+				else if (nd < dist[y] && witness.contains(y))
+				{
+					dist[y] = nd;
+					witness.update(y, nd);
+				}
+			}
+		}
+	}
+
+	private ContractionHierarchy flatten(int[][] upTargets,
+			float[][] upWeights, int[][] upMiddles)
+	{
+		int size = upTargets.length;
+		int[] offsets = new int[size + 1];
+		for (int v = 0; v < size; v++)
+			offsets[v + 1] = offsets[v] + degree[v];
+		int edges = offsets[size];
+		int[] targets = new int[edges];
+		float[] weights = new float[edges];
+		int[] middles = new int[edges];
+		for (int v = 0; v < size; v++)
+		{
+			System.arraycopy(upTargets[v], 0, targets, offsets[v], degree[v]);
+			System.arraycopy(upWeights[v], 0, weights, offsets[v], degree[v]);
+			System.arraycopy(upMiddles[v], 0, middles, offsets[v], degree[v]);
+		}
+		// The live graph isn't needed any more
+		adjTargets = null;
+		adjWeights = null;
+		adjMiddles = null;
+		return new ContractionHierarchy(offsets, targets, weights, middles);
+	}
+}
@@ -0,0 +1,224 @@
+
+package com.example.pathmaker;
+
+import java.util.Arrays;
+
+public class HierarchyQuery
+{
+	private static final int NO_MIDDLE = ContractionHierarchy.NO_MIDDLE;
+
+	/*
+	 * Shortest routes on a ContractionHierarchy. Two Dijkstra searches run
+	 * at once, one from each end, and both only ever follow edges upward in
+	 * rank. Every shortest route has a highest ranked waypoint, which both
+	 * searches reach, so the best meeting point gives the shortest route. A
+	 * search stops once its queue holds nothing shorter than the best route
+	 * found so far.
+	 * 
+	 * Since each search only climbs the hierarchy, it settles a few hundred
+	 * waypoints even on very large maps, compared to the sizeable share of
+	 * the map A* explores for long routes. Shortcuts on the resulting route
+	 * are then unpacked into the original waypoints.
+	 * 
+	 * Like RouteFinder, state lives in arrays that are reused between
+	 * queries. Not thread safe: use one HierarchyQuery per thread.
+	 */
+
+	private final Search forward = new Search();
+	private final Search backward = new Search();
+	private int[] stackFrom = new int[16];
+	private int[] stackTo = new int[16];
+	private int[] ids = new int[16];
+	private int settled;
+
+	// Returns the shortest route between the two waypoints, or null if they
+	// aren't connected
+	public Route findRoute(ContractionHierarchy ch, int fromId, int toId)
+	{
+		int size = ch.size;
+		if (fromId < 0 || fromId >= size || toId < 0 || toId >= size)
+			throw new IndexOutOfBoundsException("No waypoint " + fromId
+					+ " or " + toId + " in hierarchy of size " + size);
+		forward.start(size, fromId);
+		backward.start(size, toId);
+		settled = 0;
+
+		float best = Float.POSITIVE_INFINITY;
+		int meet = -1;
+		while (true)
+		{
+			float f = forward.minKey();
+			float b = backward.minKey();
+			if (f >= best && b >= best)
+				break;
+			Search search = f <= b ? forward : backward;
+			Search other = search == forward ? backward : forward;
+			int x = search.settle(ch);
+			settled++;
+			if (other.reached(x))
+			{
+				float d = search.dist[x] + other.dist[x];
+				if (d < best)
+				{
+					best = d;
+					meet = x;
+				}
+			}
+		}
+		if (meet < 0)
+			return null;
+		return new Route(unpack(ch, fromId, toId, meet), best);
+	}
+
+	// Waypoints settled by the last query, both directions together
+	public int getSettledCount()
+	{
+		return settled;
+	}
+
+	// Turns the two half routes meeting at meet into original waypoint ids
+	private int[] unpack(ContractionHierarchy ch, int fromId, int toId,
+			int meet)
+	{
+		int count = 0;
+		ids = ensure(ids, 1);
+		ids[count++] = fromId;
+
+		// The forward half, from meet back to fromId, has to be walked in
+		// reverse. Collect it on the stack, then unpack from the far end.
+		int depth = 0;
+		for (int x = meet; x != fromId; x = forward.parent[x])
+		{
+			stackFrom = ensure(stackFrom, depth + 1);
+			stackTo = ensure(stackTo, depth + 1);
+			stackFrom[depth] = forward.parent[x];
+			stackTo[depth] = x;
+			depth++;
+		}
+		// Reverse so the leg nearest fromId comes out of the stack first
+		for (int i = 0, j = depth - 1; i < j; i++, j--)
+		{
+			swap(stackFrom, i, j);
+			swap(stackTo, i, j);
+		}
+		int[] legFrom = Arrays.copyOf(stackFrom, depth);
+		int[] legTo = Arrays.copyOf(stackTo, depth);
+		for (int i = 0; i < depth; i++)
+			count = unpackEdge(ch, legFrom[i], legTo[i], count);
+
+		// The backward half runs from meet towards toId already
+		for (int x = meet; x != toId; x = backward.parent[x])
+			count = unpackEdge(ch, x, backward.parent[x], count);
+		return Arrays.copyOf(ids, count);
+	}
+
+	// Appends the waypoints after from on the original route from -> to,
+	// expanding shortcuts with an explicit stack. Returns the new count.
+	private int unpackEdge(ContractionHierarchy ch, int from, int to,
+			int count)
+	{
+		int depth = 0;
+		stackFrom[depth] = from;
+		stackTo[depth] = to;
+		depth++;
+		while (depth > 0)
+		{
+			depth--;
+			int a = stackFrom[depth];
+			int b = stackTo[depth];
+			int middle = ch.middles[ch.findEdge(a, b)];
+			if (middle == NO_MIDDLE)
+			{
+				ids = ensure(ids, count + 1);
+				ids[count++] = b;
+				continue;
+			}
+			// Second half first, so the first half is unpacked first
+			stackFrom = ensure(stackFrom, depth + 2);
+			stackTo = ensure(stackTo, depth + 2);
+			stackFrom[depth] = middle;
+			stackTo[depth] = b;
+			stackFrom[depth + 1] = a;
+			stackTo[depth + 1] = middle;
+			depth += 2;
+		}
+		return count;
+	}
+
+	private static int[] ensure(int[] array, int size)
+	{
+		if (array.length >= size)
+			return array;
+		return Arrays.copyOf(array, Math.max(size, array.length * 2));
+	}
+
+	private static void swap(int[] array, int i, int j)
+	{
+		int t = array[i];
+		array[i] = array[j];
+		array[j] = t;
+	}
+
+	// One direction of the search: distances and parents of the waypoints
+	// reached, and the queue on distance
+	private static class Search
+	{
+		final VisitMarker reached = new VisitMarker();
+		final IntMinHeap queue = new IntMinHeap();
+		float[] dist = new float[0];
+		int[] parent = new int[0];
+
+		void start(int size, int source)
+		{
+			if (dist.length < size)
+			{
+				int capacity = Math.max(size, dist.length * 2);
+				dist = new float[capacity];
+				parent = new int[capacity];
+			}
+			reached.begin(size);
+			queue.clear(size);
+			reached.visit(source);
+			dist[source] = 0f;
+			parent[source] = -1;
+			queue.push(source, 0f);
+		}
+
+		boolean reached(int id)
+		{
+			return reached.isVisited(id);
+		}
+
+		float minKey()
+		{
+			return queue.minKey();
+		}
+
+		// Settles the closest queued waypoint, relaxes its upward edges and
+		// returns it
+		int settle(ContractionHierarchy ch)
+		{
+			int x = queue.pop();
+			float d = dist[x];
+			int end = ch.offsets[x + 1];
+			for (int e = ch.offsets[x]; e < end; e++)
+			{
+				int y = ch.targets[e];
+				float nd = d + ch.weights[e];
+				if (reached.visit(y))
+				{
+					dist[y] = nd;
+					parent[y] = x;
+					queue.push(y, nd);
+				}
+				else if (nd < dist[y] && queue.contains(y))
+				{
+					dist[y] = nd;
+					parent[y] = x;
+					queue.update(y, nd);
+				}
+			}
+			return x;
+		}
+	}
+}
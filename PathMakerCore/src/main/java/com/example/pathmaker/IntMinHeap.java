@@ -0,0 +1,124 @@
+package com.example.pathmaker;
+
+class IntMinHeap
+{
+	/*
+	 * Binary min-heap of ids 0 to capacity - 1 on float keys, shared by the
+	 * route searches and HierarchyBuilder. Each id's slot is tracked, so a
+	 * queued id's key can be changed in place instead of queueing it again.
+	 * 
+	 * clear() is O(1): an id counts as queued only if the slot recorded for
+	 * it is in use and holds it, so slots left over from earlier uses never
+	 * need resetting. The arrays only grow.
+	 */
+
+	private int[] heap = new int[0];
+	private int[] slots = new int[0];
+	private float[] keys = new float[0];
+	private int size = 0;
+
+	// Empties the heap and makes room for ids 0 to capacity - 1
+	void clear(int capacity)
+	{
+		if (heap.length < capacity)
+		{
+			int n = Math.max(capacity, heap.length * 2);
+			heap = new int[n];
+			slots = new int[n];
+			keys = new float[n];
+		}
+		size = 0;
+	}
+
+	boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	boolean contains(int id)
+	{
+		int slot = slots[id];
+		return slot < size && heap[slot] == id;
+	}
+
+	// Key of the smallest entry, infinity if there is none
+	float minKey()
+	{
+		return size > 0 ? keys[heap[0]] : Float.POSITIVE_INFINITY;
+	}
+
+	int peek()
+	{
+		return heap[0];
+	}
+
+	// Queues id, which mustn't be queued already
+	void push(int id, float key)
+	{
+		keys[id] = key;
+		heap[size] = id;
+		siftUp(size++);
+	}
+
+	// Changes the key of a queued id
+	void update(int id, float key)
+	{
+		float old = keys[id];
+		keys[id] = key;
+		if (key < old)
+			siftUp(slots[id]);
+		else
+			siftDown(slots[id]);
+	}
+
+	int pop()
+	{
+		int top = heap[0];
+		size--;
+		if (size > 0)
+		{
+			heap[0] = heap[size];
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int slot)
+	{
+		int id = heap[slot];
+		float key = keys[id];
+		while (slot > 0)
+		{
+			int parentSlot = (slot - 1) >> 1;
+			int parentId = heap[parentSlot];
+			if (keys[parentId] <= key)
+				break;
+			heap[slot] = parentId;
+			slots[parentId] = slot;
+			slot = parentSlot;
+		}
+		heap[slot] = id;
+		slots[id] = slot;
+	}
+
+	private void siftDown(int slot)
+	{
+		int id = heap[slot];
+		float key = keys[id];
+		while (true)
+		{
+			int child = 2 * slot + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+				child++;
+			if (keys[heap[child]] >= key)
+				break;
+			heap[slot] = heap[child];
+			slots[heap[slot]] = slot;
+			slot = child;
+		}
+		heap[slot] = id;
+		slots[id] = slot;
+	}
+}
@@ -0,0 +1,108 @@
+
+package com.example.pathmaker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram
+{
+	// Bucket i holds durations of [2^i, 2^(i+1)) nanoseconds (bucket 0 also
+	// holds 0), so 40 buckets reach past 18 minutes
+	static final int BUCKETS = 40;
+
+	/*
+	 * Records how long an operation took, in buckets that double in width.
+	 * Recording is a couple of atomic adds and no allocation, and the
+	 * buckets are enough for percentiles to within a factor of two, which is
+	 * plenty for telling builds apart.
+	 * 
+	 * Timing an operation looks like
+	 * 
+	 * long start = Metrics.start();
+	 * ...
+	 * histogram.stop(start);
+	 * 
+	 * With metrics disabled start() returns 0 without reading the clock and
+	 * stop(0) returns right away.
+	 */
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	LatencyHistogram()
+	{
+	}
+
+	// Records the time since start, a value returned by Metrics.start()
+	public void stop(long start)
+	{
+		if (start != 0)
+			record(System.nanoTime() - start);
+	}
+
+	public void record(long nanos)
+	{
+		if (!Metrics.enabled)
+			return;
+		if (nanos < 0)
+			nanos = 0;
+		int bucket = 63 - Long.numberOfLeadingZeros(nanos | 1);
+		buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long m;
+		while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos))
+		{
+			// Another thread raised max in the meantime, try again
+		}
+	}
+
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	public long getTotalNanos()
+	{
+		return total.get();
+	}
+
+	public long getMaxNanos()
+	{
+		return max.get();
+	}
+
+	public long getBucket(int index)
+	{
+		return buckets.get(index);
+	}
+
+	// Upper bound of the bucket holding the given fraction (0 to 1) of the
+	// recorded durations, in nanoseconds. 0 if nothing was recorded.
+	public long getPercentileNanos(double fraction)
+	{
+		long n = count.get();
+		if (n == 0)
+			return 0;
+		long target = (long) Math.ceil(fraction * n);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += buckets.get(i);
+			if (seen >= target)
+				return Math.min((1L << (i + 1)) - 1, max.get());
+		}
+		return max.get();
+	}
+
+	void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			buckets.set(i, 0);
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,155 @@
+
+package com.example.pathmaker;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+
+public class MapBundle
+{
+	// Basically just a container for paths that is also serializable
+	public ArrayList<MapPath> paths;
+	// Last snapshot published for other threads
+	private volatile MapSnapshot published = MapSnapshot.EMPTY;
+
+	public MapBundle()
+	{
+		paths = new ArrayList<MapPath>();
+	}
+
+	public MapBundle(ArrayList<MapPath> p)
+	{
+		paths = p;
+	}
+
+	// Builds the whole text in memory. Prefer write() for anything going to
+	// a file.
+	public String serialize()
+	{
+		StringWriter out = new StringWriter();
+		try
+		{
+			write(out);
+		}
+		catch (IOException e)
+		{
+			// StringWriter doesn't throw
+		}
+		return out.toString();
+	}
+
+	// Streams the text format to out. out is flushed but not closed.
+	public void write(Writer out) throws IOException
+	{
+		MapWriter writer = new MapWriter(out);
+		writer.writeBundle(this);
+		writer.flush();
+	}
+
+	// Reads a whole bundle from a stream. Throws MapFormatException with the
+	// offending offset if the input is malformed.
+	public static MapBundle read(Reader in) throws IOException
+	{
+		return new MapParser(in).parseBundle();
+	}
+
+	// Returns null if bundleString is malformed. Use read() or MapParser
+	// directly to find out where.
+	public static MapBundle createFromString(String bundleString)
+	{
+		try
+		{
+			return new MapParser(bundleString).parseBundle();
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	// Connects two waypoints. If they are on different paths, the smaller
+	// path is integrated into the larger one (union by size) and removed, so
+	// the cost of a merge is bounded by the smaller side. Either way the
+	// merged path takes b's place in the list, which decides its colour, so
+	// drawing a stroke onto a path doesn't recolour it.
+	public void connect(Waypoint a, Waypoint b)
+	{
+		if (a.path != b.path)
+		{
+			MapPath larger = b.path;
+			MapPath smaller = a.path;
+			if (smaller.size() > larger.size())
+			{
+				larger = a.path;
+				smaller = b.path;
+				removePath(larger);
+				int index = paths.lastIndexOf(smaller);
+				if (index >= 0)
+					paths.set(index, larger);
+			}
+			else
+				removePath(smaller);
+			larger.integrate(smaller);
+		}
+		a.addConnection(b);
+		b.addConnection(a);
+	}
+
+	// Paths are usually removed right after being created (a new stroke
+	// merging into an existing path), so search from the end
+	public void removePath(MapPath p)
+	{
+		int index = paths.lastIndexOf(p);
+		if (index >= 0)
+			paths.remove(index);
+	}
+
+	// Removes the deleted waypoints of every path, and the paths that had
+	// all of theirs deleted. The ids match what the writers save for the
+	// same bundle. Renumbers waypoints, so only call this once a snapshot
+	// with the new ids is on disk (see MapPath.compact()).
+	public void compact()
+	{
+		for (int i = paths.size() - 1; i >= 0; i--)
+		{
+			MapPath p = paths.get(i);
+			if (p.isAllDeleted())
+				paths.remove(i);
+			else
+				p.compact();
+		}
+	}
+
+	// Makes the current state of the paths visible to snapshot(), and
+	// returns it. Only the editing thread may call this; paths that haven't
+	// changed since the last publish are shared, not copied.
+	public MapSnapshot publish()
+	{
+		MapSnapshot current = MapSnapshot.update(published, this);
+		published = current;
+		return current;
+	}
+
+	// The last published state. Safe to call from any thread, and cheap: the
+	// snapshot is immutable, so nothing is copied or locked.
+	public MapSnapshot snapshot()
+	{
+		return published;
+	}
+
+	// Read-only copies of all paths, safe to hand to another thread
+	public FrozenPath[] freeze()
+	{
+		FrozenPath[] frozen = new FrozenPath[paths.size()];
+		for (int i = 0; i < frozen.length; i++)
+			frozen[i] = paths.get(i).freeze();
+		return frozen;
+	}
+
+	public MapPath getPrimaryPath()
+	{
+		return paths.get(0);
+	}
+}
@@ -0,0 +1,107 @@
+
+package com.example.pathmaker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+public class MapFiles
+{
+	private static final int HEADER_SIZE = 4;
+
+	// Loading and saving of .map files in either the text or binary format.
+	// The format of an existing file is detected from its first bytes.
+
+	private MapFiles()
+	{
+	}
+
+	// Repairs whatever breaks the invariants checked by PathValidator
+	public static MapBundle load(File file) throws IOException
+	{
+		return load(file, new ArrayList<PathValidator.Violation>());
+	}
+
+	// Same, adding the repaired violations to repairs
+	public static MapBundle load(File file,
+			ArrayList<PathValidator.Violation> repairs) throws IOException
+	{
+		MapBundle bundle;
+		if (isBinary(file))
+			bundle = BinaryMapCodec.load(file);
+		else
+		{
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), Charset.forName("US-ASCII")));
+			try
+			{
+				bundle = MapBundle.read(in);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		new PathValidator(true).validate(bundle, repairs);
+		return bundle;
+	}
+
+	public static void save(MapBundle bundle, File file, boolean binary)
+			throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			if (binary)
+				BinaryMapCodec.write(bundle, out);
+			else
+			{
+				MapWriter writer = new MapWriter(out);
+				writer.writeBundle(bundle);
+				writer.flush();
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	public static boolean isBinary(File file) throws IOException
+	{
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try
+		{
+			byte[] header = new byte[HEADER_SIZE];
+			int read = 0;
+			while (read < header.length)
+			{
+				int n = in.read(header, read, header.length - read);
+				if (n < 0)
+					break;
+				read += n;
+			}
+			return BinaryMapCodec.hasMagic(header, read);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	// Rewrites source into target in the other format (or the same one, if
+	// toBinary matches the source)
+	public static void convert(File source, File target, boolean toBinary)
+			throws IOException
+	{
+		save(load(source), target, toBinary);
+	}
+}
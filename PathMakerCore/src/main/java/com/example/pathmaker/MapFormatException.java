@@ -0,0 +1,24 @@
+
+package com.example.pathmaker;
+
+import java.io.IOException;
+
+public class MapFormatException extends IOException
+{
+	private static final long serialVersionUID = -3198442573526214310L;
+
+	private final long offset;
+
+	// Thrown when a .map file doesn't follow the expected grammar. The offset
+	// is the character (or byte) position of the offending token.
+	public MapFormatException(String message, long offset)
+	{
+		super(message + " at offset " + offset);
+		this.offset = offset;
+	}
+
+	public long getOffset()
+	{
+		return offset;
+	}
+}
@@ -0,0 +1,435 @@
+
+package com.example.pathmaker;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+public class MapJournal
+{
+	private static final int MAGIC = 0x504d4a4c; // "PMJL"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 1 + 8;
+	private static final byte NEW_PATH = 1;
+	private static final byte ADD_WAYPOINT = 2;
+	private static final byte CONNECT = 3;
+	private static final byte DELETE = 4;
+	// Compact once the journal is this big compared to the snapshot...
+	private static final float COMPACT_RATIO = 0.5f;
+	// ...but don't bother for tiny journals
+	private static final long COMPACT_MIN_BYTES = 16 * 1024;
+
+	/*
+	 * Append-only log of the edits made since a .map file (the snapshot) was
+	 * last written, stored next to it as <name>.journal. Instead of
+	 * rewriting the whole map after every stroke, only the stroke's records
+	 * are appended and synced. On load the snapshot is read and the journal
+	 * replayed on top of it. Once the journal gets big compared to the
+	 * snapshot, a fresh snapshot is written and the journal emptied.
+	 * 
+	 * Records are: new path (x, y), add waypoint (path index, x, y) and
+	 * connect (path index, id, path index, id). Integration of paths isn't
+	 * recorded separately, replaying a connect through MapBundle.connect
+	 * merges the paths exactly like the original edit did. Delete (path
+	 * index, first id, end id) leaves tombstones, which keep the ids of
+	 * later records valid. They are compacted away when the next snapshot is
+	 * written, but the live paths only take the new ids once that snapshot
+	 * is on disk. Records are tagged with the generation of ids they were
+	 * made with, and a journal doesn't take records from another generation
+	 * than its snapshot's.
+	 * 
+	 * The header holds the CRC32 of the snapshot the journal belongs to. A
+	 * crash after a new snapshot was written but before the journal was
+	 * emptied leaves a journal whose CRC doesn't match, and it is ignored
+	 * instead of being applied twice.
+	 * 
+	 * The record* methods and takePending() are meant for the editing thread,
+	 * they only fill a memory buffer. The methods touching the file must all
+	 * be called from one other thread (AsyncMapStore's).
+	 */
+
+	private final File mapFile;
+	private final File journalFile;
+	private final ByteArrayOutputStream pendingBytes;
+	private final DataOutputStream pending;
+	private FileOutputStream out = null;
+	private long journalBytes = 0;
+	private volatile long snapshotBytes;
+	// Generation of the ids in new records (editing thread) and in the
+	// snapshot on disk (store thread)
+	private int generation = 0;
+	private int fileGeneration = 0;
+	// Progress of a snapshot that renumbers ids, see AsyncMapStore.save()
+	static final int RENUMBER_NONE = 0;
+	static final int RENUMBER_WRITING = 1;
+	static final int RENUMBER_WRITTEN = 2;
+	static final int RENUMBER_FAILED = 3;
+	private volatile int renumbering = RENUMBER_NONE;
+	private boolean takenWhileRenumbering = false;
+	private boolean snapshotRequested = false;
+
+	private MapJournal(File map, long snapshotLength)
+	{
+		mapFile = map;
+		journalFile = getJournalFile(map);
+		pendingBytes = new ByteArrayOutputStream();
+		pending = new DataOutputStream(pendingBytes);
+		snapshotBytes = snapshotLength;
+	}
+
+	public static File getJournalFile(File mapFile)
+	{
+		return new File(mapFile.getPath() + ".journal");
+	}
+
+	public File getMapFile()
+	{
+		return mapFile;
+	}
+
+	// Journal for a map that hasn't been saved yet; the file is only
+	// created once AsyncMapStore writes the first snapshot
+	public static MapJournal create(File mapFile)
+	{
+		return new MapJournal(mapFile, 0);
+	}
+
+	// Journal for a snapshot that was just loaded into bundle: records
+	// belonging to that snapshot are replayed onto bundle and further
+	// records are appended. A journal of some other snapshot is discarded.
+	static MapJournal open(File mapFile, MapBundle bundle, long snapshotCrc,
+			long snapshotLength) throws IOException
+	{
+		MapJournal journal = new MapJournal(mapFile, snapshotLength);
+		long valid = journal.replay(bundle, snapshotCrc);
+		if (valid < 0)
+			journal.reset(snapshotCrc, snapshotLength, 0);
+		else
+		{
+			journal.journalBytes = valid;
+			journal.truncate(valid);
+		}
+		return journal;
+	}
+
+	public void recordNewPath(int x, int y)
+	{
+		try
+		{
+			pending.writeByte(NEW_PATH);
+			pending.writeInt(x);
+			pending.writeInt(y);
+		}
+		catch (IOException e)
+		{
+			// Can't happen on a ByteArrayOutputStream
+		}
+	}
+
+	public void recordWaypoint(int pathIndex, int x, int y)
+	{
+		try
+		{
+			pending.writeByte(ADD_WAYPOINT);
+			pending.writeInt(pathIndex);
+			pending.writeInt(x);
+			pending.writeInt(y);
+		}
+		catch (IOException e)
+		{
+			// Can't happen on a ByteArrayOutputStream
+		}
+	}
+
+	public void recordConnect(int pathA, int idA, int pathB, int idB)
+	{
+		try
+		{
+			pending.writeByte(CONNECT);
+			pending.writeInt(pathA);
+			pending.writeInt(idA);
+			pending.writeInt(pathB);
+			pending.writeInt(idB);
+		}
+		catch (IOException e)
+		{
+			// Can't happen on a ByteArrayOutputStream
+		}
+	}
+
+	public void recordDelete(int pathIndex, int from, int to)
+	{
+		try
+		{
+			pending.writeByte(DELETE);
+			pending.writeInt(pathIndex);
+			pending.writeInt(from);
+			pending.writeInt(to);
+		}
+		catch (IOException e)
+		{
+			// Can't happen on a ByteArrayOutputStream
+		}
+	}
+
+	// Hands out the records made since the last call
+	byte[] takePending()
+	{
+		byte[] records = pendingBytes.toByteArray();
+		pendingBytes.reset();
+		journalBytes += records.length;
+		if (renumbering != RENUMBER_NONE && records.length > 0)
+			takenWhileRenumbering = true;
+		return records;
+	}
+
+	int getGeneration()
+	{
+		return generation;
+	}
+
+	int getRenumbering()
+	{
+		return renumbering;
+	}
+
+	// Editing thread, before a snapshot that renumbers ids is queued
+	void beginRenumbering()
+	{
+		renumbering = RENUMBER_WRITING;
+		takenWhileRenumbering = false;
+		snapshotRequested = false;
+	}
+
+	// Editing thread, for a snapshot that has to wait for the one being
+	// written
+	void requestSnapshot()
+	{
+		snapshotRequested = true;
+	}
+
+	// Store thread, once the renumbering snapshot is done with
+	void endRenumbering(boolean written)
+	{
+		renumbering = written ? RENUMBER_WRITTEN : RENUMBER_FAILED;
+	}
+
+	// Editing thread, after the bundle has been brought in line with the
+	// outcome of the renumbering snapshot. Returns whether another snapshot
+	// is needed: one was requested meanwhile, or records were made with ids
+	// the new snapshot no longer has.
+	boolean finishRenumbering()
+	{
+		boolean written = renumbering == RENUMBER_WRITTEN;
+		boolean resave = snapshotRequested || written
+				&& (takenWhileRenumbering || pendingBytes.size() > 0);
+		if (written)
+			generation++;
+		renumbering = RENUMBER_NONE;
+		takenWhileRenumbering = false;
+		snapshotRequested = false;
+		return resave;
+	}
+
+	// Hands out the records made since the last call to a snapshot that is
+	// about to include them. The caller keeps them until the snapshot is on
+	// disk, and appends them after all if it couldn't be written.
+	byte[] takeForSnapshot()
+	{
+		byte[] records = pendingBytes.toByteArray();
+		pendingBytes.reset();
+		journalBytes = 0;
+		return records;
+	}
+
+	boolean shouldCompact()
+	{
+		return journalBytes > COMPACT_MIN_BYTES
+				&& journalBytes > snapshotBytes * COMPACT_RATIO;
+	}
+
+	// Appends records made with the given generation of ids and makes sure
+	// they're on disk. Records from an older generation are dropped; the
+	// snapshot that replaced it is followed by one that includes them.
+	void append(byte[] records, int recordGeneration) throws IOException
+	{
+		if (records.length == 0 || recordGeneration != fileGeneration)
+			return;
+		if (out == null)
+			out = new FileOutputStream(journalFile, true);
+		out.write(records);
+		out.getFD().sync();
+	}
+
+	// Empties the journal and ties it to a new snapshot
+	void reset(long snapshotCrc, long snapshotLength, int snapshotGeneration)
+			throws IOException
+	{
+		close();
+		snapshotBytes = snapshotLength;
+		fileGeneration = snapshotGeneration;
+		FileOutputStream header = new FileOutputStream(journalFile);
+		try
+		{
+			DataOutputStream data = new DataOutputStream(header);
+			data.writeInt(MAGIC);
+			data.writeByte(VERSION);
+			data.writeLong(snapshotCrc);
+			data.flush();
+			header.getFD().sync();
+		}
+		finally
+		{
+			header.close();
+		}
+	}
+
+	void close() throws IOException
+	{
+		if (out != null)
+		{
+			out.close();
+			out = null;
+		}
+	}
+
+	// Applies the journal's records to bundle. Returns the length of the
+	// part of the file that was valid, or -1 if the journal is missing or
+	// belongs to another snapshot.
+	private long replay(MapBundle bundle, long snapshotCrc) throws IOException
+	{
+		if (!journalFile.exists() || journalFile.length() < HEADER_SIZE)
+			return -1;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(journalFile)));
+		long valid = HEADER_SIZE;
+		try
+		{
+			if (in.readInt() != MAGIC || in.readByte() != VERSION
+					|| in.readLong() != snapshotCrc)
+				return -1;
+			int type;
+			// Records are fixed size per type, so the end of each complete
+			// record is known without counting bytes
+			while ((type = in.read()) != -1 && apply(bundle, type, in))
+				valid += 1 + recordSize(type);
+		}
+		catch (EOFException e)
+		{
+			// The last record was cut off by a crash
+		}
+		finally
+		{
+			in.close();
+		}
+		return valid;
+	}
+
+	private static int recordSize(int type)
+	{
+		if (type == NEW_PATH)
+			return 8;
+		if (type == ADD_WAYPOINT || type == DELETE)
+			return 12;
+		return 16;
+	}
+
+	// Returns false for an unknown or inconsistent record
+	private static boolean apply(MapBundle bundle, int type,
+			DataInputStream in) throws IOException
+	{
+		if (type == NEW_PATH)
+		{
+			int x = in.readInt();
+			int y = in.readInt();
+			bundle.paths.add(new MapPath(new Waypoint(x, y)));
+			return true;
+		}
+		if (type == ADD_WAYPOINT)
+		{
+			int path = in.readInt();
+			int x = in.readInt();
+			int y = in.readInt();
+			if (path < 0 || path >= bundle.paths.size())
+				return false;
+			bundle.paths.get(path).addWaypoint(new Waypoint(x, y));
+			return true;
+		}
+		if (type == CONNECT)
+		{
+			Waypoint a = getWaypoint(bundle, in.readInt(), in.readInt());
+			Waypoint b = getWaypoint(bundle, in.readInt(), in.readInt());
+			if (a == null || b == null)
+				return false;
+			bundle.connect(a, b);
+			return true;
+		}
+		if (type == DELETE)
+		{
+			int path = in.readInt();
+			int from = in.readInt();
+			int to = in.readInt();
+			if (path < 0 || path >= bundle.paths.size() || from < 0
+					|| from > to || to > bundle.paths.get(path).size())
+				return false;
+			bundle.paths.get(path).deleteRange(from, to);
+			return true;
+		}
+		return false;
+	}
+
+	private static Waypoint getWaypoint(MapBundle bundle, int path, int id)
+	{
+		if (path < 0 || path >= bundle.paths.size())
+			return null;
+		MapPath p = bundle.paths.get(path);
+		if (id < 0 || id >= p.size())
+			return null;
+		return p.getWaypoint(id);
+	}
+
+	// Cuts off anything after the last complete record, so that new records
+	// don't end up behind garbage
+	private void truncate(long length) throws IOException
+	{
+		if (journalFile.length() == length)
+			return;
+		FileOutputStream file = new FileOutputStream(journalFile, true);
+		try
+		{
+			file.getChannel().truncate(length);
+			file.getFD().sync();
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	// CRC32 of a whole file
+	static long checksum(File file) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			byte[] buffer = new byte[64 * 1024];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				crc.update(buffer, 0, n);
+		}
+		finally
+		{
+			in.close();
+		}
+		return crc.getValue();
+	}
+}
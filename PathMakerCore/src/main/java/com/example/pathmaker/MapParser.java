@@ -0,0 +1,202 @@
+
+package com.example.pathmaker;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class MapParser
+{
+	private static final int BUFFER_SIZE = 8192;
+
+	/*
+	 * Reads the text format produced by MapBundle.serialize in a single pass:
+	 * 
+	 * bundle := '$' path* '$'
+	 * path := '<' waypoint* '>'
+	 * waypoint := '{' id '(' x ',' y ')' ('[' edgeToId ']')* '}'
+	 * 
+	 * The parser only ever looks at the next character, so no substrings of
+	 * the remaining input are created. Input can come from a CharSequence
+	 * (read in place) or a Reader (read through a fixed size buffer).
+	 */
+
+	private final CharSequence text;
+	private final Reader reader;
+	private final char[] buffer;
+	private int bufferPos = 0;
+	private int bufferLen = 0;
+	private final int end;
+	// Absolute offset of the next character, used for error reporting
+	private long offset;
+	// Repeated edges of the path being parsed, see MapPath.repeatedEdges
+	private int[] repeats = new int[8];
+	private int repeatCount = 0;
+	private int waypointIndex = 0;
+
+	public MapParser(CharSequence input)
+	{
+		this(input, 0, input.length());
+	}
+
+	// Parses only input[start, end). Offsets are still reported relative to
+	// the start of input.
+	public MapParser(CharSequence input, int start, int end)
+	{
+		text = input;
+		reader = null;
+		buffer = null;
+		offset = start;
+		this.end = end;
+	}
+
+	public MapParser(Reader input)
+	{
+		text = null;
+		reader = input;
+		buffer = new char[BUFFER_SIZE];
+		offset = 0;
+		end = 0;
+	}
+
+	public long getOffset()
+	{
+		return offset;
+	}
+
+	public MapBundle parseBundle() throws IOException
+	{
+		expect('$');
+		ArrayList<MapPath> paths = new ArrayList<MapPath>();
+		while (peek() == '<')
+			paths.add(parsePath());
+		expect('$');
+		return new MapBundle(paths);
+	}
+
+	public MapPath parsePath() throws IOException
+	{
+		expect('<');
+		ArrayList<Waypoint> waypoints = new ArrayList<Waypoint>();
+		repeatCount = 0;
+		while (peek() == '{')
+		{
+			waypointIndex = waypoints.size();
+			waypoints.add(parseWaypoint());
+		}
+		expect('>');
+		MapPath path = new MapPath(waypoints);
+		if (repeatCount > 0)
+			path.repeatedEdges = Arrays.copyOf(repeats, repeatCount);
+		return path;
+	}
+
+	public Waypoint parseWaypoint() throws IOException
+	{
+		expect('{');
+		int id = parseInt();
+		expect('(');
+		int x = parseInt();
+		expect(',');
+		int y = parseInt();
+		expect(')');
+		// Older versions of the editor saved the same edge over and over,
+		// those repeats are dropped here and noted for PathValidator
+		EdgeSet edges = new EdgeSet();
+		while (peek() == '[')
+		{
+			next();
+			int to = parseInt();
+			if (!edges.add(to))
+				addRepeat(to);
+			expect(']');
+		}
+		expect('}');
+		return new Waypoint(x, y, id, edges);
+	}
+
+	// Reads an optionally signed decimal int without building a String
+	private int parseInt() throws IOException
+	{
+		long start = offset;
+		boolean negative = false;
+		int c = peek();
+		if (c == '-' || c == '+')
+		{
+			negative = c == '-';
+			next();
+			c = peek();
+		}
+		if (c < '0' || c > '9')
+			throw error("expected a number", start);
+
+		// Accumulate negatively so that Integer.MIN_VALUE fits
+		long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		long value = 0;
+		while (c >= '0' && c <= '9')
+		{
+			value = value * 10 - (c - '0');
+			if (value < limit)
+				throw error("number out of range", start);
+			next();
+			c = peek();
+		}
+		return (int) (negative ? value : -value);
+	}
+
+	private void addRepeat(int to)
+	{
+		if (repeatCount == repeats.length)
+			repeats = Arrays.copyOf(repeats, repeatCount * 2);
+		repeats[repeatCount++] = waypointIndex;
+		repeats[repeatCount++] = to;
+	}
+
+	private void expect(char expected) throws IOException
+	{
+		int c = peek();
+		if (c != expected)
+		{
+			if (c == -1)
+				throw error("expected '" + expected
+						+ "' but reached end of input", offset);
+			throw error("expected '" + expected + "' but found '" + (char) c
+					+ "'", offset);
+		}
+		next();
+	}
+
+	// Returns the next character without consuming it, or -1 at the end
+	private int peek() throws IOException
+	{
+		if (text != null)
+		{
+			return offset < end ? text.charAt((int) offset) : -1;
+		}
+		if (bufferPos == bufferLen)
+		{
+			bufferLen = reader.read(buffer, 0, buffer.length);
+			bufferPos = 0;
+			if (bufferLen <= 0)
+			{
+				bufferLen = 0;
+				return -1;
+			}
+		}
+		return buffer[bufferPos];
+	}
+
+	// Consumes the character returned by the last peek()
+	private void next()
+	{
+		if (text == null)
+			bufferPos++;
+		offset++;
+	}
+
+	private MapFormatException error(String message, long at)
+	{
+		return new MapFormatException(message, at);
+	}
+}
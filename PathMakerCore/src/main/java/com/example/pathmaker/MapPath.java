@@ -0,0 +1,298 @@
+
+package com.example.pathmaker;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+public class MapPath
+{
+	private static final LatencyHistogram INTEGRATE_TIME = Metrics
+			.histogram("integrate");
+
+	private ArrayList<Waypoint> waypoints;
+	private FrozenPath frozen;
+	// Lowest waypoint id whose position or edges changed since frozen was
+	// built
+	private int changedFrom = 0;
+	// Deleted waypoints, one bit per id (null until something is deleted)
+	private long[] deleted = null;
+	private int deletedCount = 0;
+	// Edges the file listed more than once, as waypoint id, target id
+	// pairs. Set by the parsers, which keep one copy of each, and cleared
+	// once PathValidator has reported them.
+	int[] repeatedEdges = null;
+
+	/*
+	 * A path consists of a list of Waypoints. The first element is considered
+	 * to be the root. Each Waypoint contains a list of Edges (basically just
+	 * integer wrappers) that have a value which corresponds to the id of the
+	 * Waypoint it is connected to. This design choice was due to the fact that
+	 * using pointers to waypoints directly caused Serialization to overflow the
+	 * stack. Ids also made keeping track of integrating paths easier. To follow
+	 * the path, simply start at the root and follow the edge ids until the
+	 * destination is reached.
+	 * 
+	 * Deleting a waypoint would shift the ids of everything after it, so a
+	 * deleted waypoint is only disconnected and marked in a bitset, leaving
+	 * a tombstone at its id. Having no connections, a tombstone is never
+	 * reached by following edges. compact() later removes all tombstones
+	 * and renumbers the survivors in a single pass.
+	 */
+
+	public MapPath(Waypoint root)
+	{
+		root.path = this;
+		root.id = 0;
+		waypoints = new ArrayList<Waypoint>();
+		waypoints.add(root);
+	}
+
+	public MapPath(ArrayList<Waypoint> points)
+	{
+		waypoints = points;
+		for (Waypoint wp : waypoints)
+			wp.path = this;
+	}
+
+	public String serialize()
+	{
+		StringWriter out = new StringWriter();
+		try
+		{
+			MapWriter writer = new MapWriter(out);
+			writer.writePath(this);
+			writer.flush();
+		}
+		catch (IOException e)
+		{
+			// StringWriter doesn't throw
+		}
+		return out.toString();
+	}
+
+	// Returns null if pathString is malformed
+	public static MapPath createFromString(String pathString)
+	{
+		try
+		{
+			return new MapParser(pathString).parsePath();
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	// Resizes points to appear proportional(ish) on any window aspect ratio
+	/*
+	 * public void resize(float camWidth, float camHeight) { float dw = camWidth
+	 * / cameraWidth; float dh = camHeight / cameraHeight; for (Waypoint wp :
+	 * waypoints) { wp.x *= dw; wp.y *= dh; }
+	 * 
+	 * cameraWidth = camWidth; cameraHeight = camHeight; }
+	 */
+
+	public int size()
+	{
+		return waypoints.size();
+	}
+
+	public Waypoint getRoot()
+	{
+		return waypoints.get(0);
+	}
+
+	// Adding a new waypoint involves setting its ID and linking it to the path
+	public void addWaypoint(Waypoint wp)
+	{
+		wp.path = this;
+		wp.id = waypoints.size();
+		waypoints.add(wp);
+		markChanged(wp.id);
+	}
+
+	public Waypoint getWaypoint(int id)
+	{
+		return waypoints.get(id);
+	}
+
+	public boolean isDeleted(int id)
+	{
+		return deleted != null && (id >>> 6) < deleted.length
+				&& (deleted[id >>> 6] & (1L << id)) != 0;
+	}
+
+	// Number of tombstones, included in size() until the next compact()
+	public int getDeletedCount()
+	{
+		return deletedCount;
+	}
+
+	public void deleteWaypoint(int id)
+	{
+		deleteRange(id, id + 1);
+	}
+
+	// Deletes waypoints from up to (but not including) to, e.g. the points of
+	// one stroke, which are always numbered consecutively. Costs the number
+	// of connections of the deleted waypoints, ids don't change.
+	public void deleteRange(int from, int to)
+	{
+		int size = waypoints.size();
+		if (from < 0 || from > to || to > size)
+			throw new IndexOutOfBoundsException("No waypoints " + from
+					+ " to " + to + " in path of size " + size);
+		for (int id = from; id < to; id++)
+		{
+			if (isDeleted(id))
+				continue;
+			Waypoint wp = waypoints.get(id);
+			int count = wp.getConnectionCount();
+			for (int j = 0; j < count; j++)
+			{
+				int other = wp.getConnectionId(j);
+				if (other != id)
+					waypoints.get(other).removeConnection(id);
+			}
+			wp.clearConnections();
+			setDeleted(id);
+			markChanged(id);
+		}
+	}
+
+	// Removes the tombstones and renumbers the remaining waypoints (keeping
+	// their order) with one pass over the waypoints and one over their
+	// edges. Returns the new id of every old one, -1 for deleted waypoints,
+	// or null if there was nothing to remove. Journal records refer to ids,
+	// so this may only happen right before a new snapshot is written.
+	public int[] compact()
+	{
+		int[] remap = getCompactedIds();
+		if (remap == null)
+			return null;
+		int size = waypoints.size();
+		ArrayList<Waypoint> kept = new ArrayList<Waypoint>(size
+				- deletedCount);
+		for (int i = 0; i < size; i++)
+		{
+			if (remap[i] >= 0)
+				kept.add(waypoints.get(i));
+		}
+		// Tombstones have no edges left, so every target has a new id
+		for (Waypoint wp : kept)
+		{
+			wp.id = remap[wp.id];
+			wp.remapEdgeIds(remap);
+		}
+		waypoints = kept;
+		deleted = null;
+		deletedCount = 0;
+		markChanged(0);
+		return remap;
+	}
+
+	// The ids compact() would give the waypoints (-1 for deleted ones),
+	// without changing anything. null if nothing is deleted.
+	public int[] getCompactedIds()
+	{
+		return deletedCount == 0 ? null : compactedIds(deleted,
+				waypoints.size());
+	}
+
+	// True if the path had waypoints and all of them were deleted. Such a
+	// path disappears when compacted, and writers skip it.
+	public boolean isAllDeleted()
+	{
+		return deletedCount > 0 && deletedCount == waypoints.size();
+	}
+
+	static int[] compactedIds(long[] deleted, int size)
+	{
+		int[] remap = new int[size];
+		int next = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if ((i >>> 6) < deleted.length
+					&& (deleted[i >>> 6] & (1L << i)) != 0)
+				remap[i] = -1;
+			else
+				remap[i] = next++;
+		}
+		return remap;
+	}
+
+	private void setDeleted(int id)
+	{
+		int word = id >>> 6;
+		if (deleted == null || word >= deleted.length)
+		{
+			long[] grown = new long[(waypoints.size() + 63) >>> 6];
+			if (deleted != null)
+				System.arraycopy(deleted, 0, grown, 0, deleted.length);
+			deleted = grown;
+		}
+		deleted[word] |= 1L << id;
+		deletedCount++;
+	}
+
+	// Copy of the tombstone bitset for a FrozenPath, null if there are none
+	long[] copyDeleted()
+	{
+		return deletedCount == 0 ? null : deleted.clone();
+	}
+
+	// Returns a read-only CSR copy of this path for rendering, searching and
+	// exporting. The copy is cached, and after edits only the waypoints from
+	// the first changed id onwards are rebuilt (new strokes only touch the
+	// end of the list).
+	public FrozenPath freeze()
+	{
+		if (frozen == null || changedFrom < waypoints.size()
+				|| frozen.size != waypoints.size())
+		{
+			frozen = FrozenPath.build(this, frozen, changedFrom);
+			changedFrom = Integer.MAX_VALUE;
+		}
+		return frozen;
+	}
+
+	// Called whenever waypoint id (or anything after it) is modified
+	void markChanged(int id)
+	{
+		if (id < changedFrom)
+			changedFrom = id;
+	}
+
+	// Adds all waypoints in oldPath to this path
+	// Because it's all linear, adding the current list size to the nodes of the
+	// old path doesn't unlink anything. Only oldPath's waypoints are touched
+	// (their ids and edges are rewritten right away), so callers should
+	// integrate the smaller path into the larger one (see MapBundle.connect).
+	// oldPath is left empty.
+	public void integrate(MapPath oldPath)
+	{
+		long start = Metrics.start();
+		int reassignEdgesFrom = waypoints.size();
+		waypoints.ensureCapacity(reassignEdgesFrom + oldPath.waypoints.size());
+		for (Waypoint wp : oldPath.waypoints)
+		{
+			addWaypoint(wp);
+			wp.addToEdgeIds(reassignEdgesFrom);
+		}
+		// Tombstones move along with their ids
+		if (oldPath.deletedCount > 0)
+		{
+			for (int i = 0; i < oldPath.waypoints.size(); i++)
+			{
+				if (oldPath.isDeleted(i))
+					setDeleted(reassignEdgesFrom + i);
+			}
+			oldPath.deleted = null;
+			oldPath.deletedCount = 0;
+		}
+		oldPath.waypoints.clear();
+		oldPath.markChanged(0);
+		INTEGRATE_TIME.stop(start);
+	}
+}
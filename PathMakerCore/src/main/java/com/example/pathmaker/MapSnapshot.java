@@ -0,0 +1,87 @@
+
+package com.example.pathmaker;
+
+public class MapSnapshot
+{
+	/*
+	 * Immutable view of a MapBundle at one point in time, made of the
+	 * FrozenPath of every path. Snapshots are published by the editing
+	 * thread (MapBundle.publish()) and can be picked up by any thread with
+	 * MapBundle.snapshot(), which is a single volatile read. Readers never
+	 * lock anything, and editing carries on while they work.
+	 * 
+	 * Consecutive snapshots share the FrozenPath of every path that didn't
+	 * change in between, so publishing only costs the rebuild of the edited
+	 * paths (see MapPath.freeze()) plus one array of references.
+	 */
+
+	public static final MapSnapshot EMPTY = new MapSnapshot(0,
+			new FrozenPath[0]);
+
+	// Increases by one with every published change
+	public final long version;
+	// Not to be modified, it's shared with later snapshots' builders
+	final FrozenPath[] paths;
+
+	MapSnapshot(long version, FrozenPath[] paths)
+	{
+		this.version = version;
+		this.paths = paths;
+	}
+
+	public int getPathCount()
+	{
+		return paths.length;
+	}
+
+	public FrozenPath getPath(int index)
+	{
+		return paths[index];
+	}
+
+	public int getWaypointCount()
+	{
+		int count = 0;
+		for (FrozenPath p : paths)
+			count += p.size - p.deletedCount;
+		return count;
+	}
+
+	// Connections between waypoints, each counted once
+	public int getEdgeCount()
+	{
+		int count = 0;
+		for (FrozenPath p : paths)
+			count += p.getEdgeCount();
+		return count / 2;
+	}
+
+	// Snapshot of bundle's current state, or previous if nothing changed
+	// since it was taken. previous must come from the same bundle.
+	static MapSnapshot update(MapSnapshot previous, MapBundle bundle)
+	{
+		int count = bundle.paths.size();
+		FrozenPath[] frozen = null;
+		for (int i = 0; i < count; i++)
+		{
+			FrozenPath p = bundle.paths.get(i).freeze();
+			if (frozen == null && (i >= previous.paths.length
+					|| previous.paths[i] != p))
+			{
+				frozen = new FrozenPath[count];
+				System.arraycopy(previous.paths, 0, frozen, 0, i);
+			}
+			if (frozen != null)
+				frozen[i] = p;
+		}
+		if (frozen == null)
+		{
+			if (count == previous.paths.length)
+				return previous;
+			// Only paths at the end were removed
+			frozen = new FrozenPath[count];
+			System.arraycopy(previous.paths, 0, frozen, 0, count);
+		}
+		return new MapSnapshot(previous.version + 1, frozen);
+	}
+}
@@ -0,0 +1,220 @@
+
+package com.example.pathmaker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+public class MapWriter
+{
+	private static final int BUFFER_SIZE = 8192;
+	// Longest int is "-2147483648"
+	private static final int MAX_INT_CHARS = 11;
+
+	/*
+	 * Writes the same text as MapBundle.serialize, but straight into a stream.
+	 * Characters are collected in a fixed size buffer that is handed to the
+	 * underlying Writer whenever it fills up, so memory use doesn't depend on
+	 * the size of the map and no intermediate Strings are built.
+	 * 
+	 * Deleted waypoints (see MapPath) aren't written. The others are
+	 * numbered as if the path had been compacted, and paths whose waypoints
+	 * were all deleted are left out.
+	 */
+
+	private final Writer out;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int count = 0;
+
+	public MapWriter(Writer output)
+	{
+		out = output;
+	}
+
+	// The format is plain ASCII, so the bytes match String.getBytes()
+	public MapWriter(OutputStream output)
+	{
+		this(new OutputStreamWriter(output, Charset.forName("US-ASCII")));
+	}
+
+	public void writeBundle(MapBundle bundle) throws IOException
+	{
+		write('$');
+		for (MapPath p : bundle.paths)
+		{
+			if (!p.isAllDeleted())
+				writePath(p);
+		}
+		write('$');
+	}
+
+	// Frozen paths can be written from any thread while the editor keeps
+	// changing the live ones. Waypoints of a FrozenPath are numbered by
+	// position.
+	public void writeBundle(FrozenPath[] paths) throws IOException
+	{
+		beginBundle();
+		for (FrozenPath p : paths)
+		{
+			if (p.isAllDeleted())
+				continue;
+			beginPath();
+			writeWaypoints(p, p.getCompactedIds(), 0, p.size);
+			endPath();
+		}
+		endBundle();
+	}
+
+	// The begin/end methods write the delimiters around bundles and paths,
+	// so that big paths can be written in several calls (e.g. to report
+	// progress in between)
+
+	public void beginBundle() throws IOException
+	{
+		write('$');
+	}
+
+	public void endBundle() throws IOException
+	{
+		write('$');
+	}
+
+	public void beginPath() throws IOException
+	{
+		write('<');
+	}
+
+	public void endPath() throws IOException
+	{
+		write('>');
+	}
+
+	// Writes waypoints from to to - 1 of path
+	public void writeWaypoints(FrozenPath path, int from, int to)
+			throws IOException
+	{
+		writeWaypoints(path, path.getCompactedIds(), from, to);
+	}
+
+	// Same, with ids from path.getCompactedIds(), for paths written in
+	// several calls
+	public void writeWaypoints(FrozenPath path, int[] ids, int from, int to)
+			throws IOException
+	{
+		for (int i = from; i < to; i++)
+		{
+			if (ids != null && ids[i] < 0)
+				continue;
+			write('{');
+			writeInt(ids == null ? i : ids[i]);
+			write('(');
+			writeInt(path.xs[i]);
+			write(',');
+			writeInt(path.ys[i]);
+			write(')');
+			int end = path.offsets[i + 1];
+			for (int e = path.offsets[i]; e < end; e++)
+			{
+				write('[');
+				writeInt(ids == null ? path.targets[e] : ids[path.targets[e]]);
+				write(']');
+			}
+			write('}');
+		}
+	}
+
+	public void writePath(MapPath path) throws IOException
+	{
+		write('<');
+		int[] ids = path.getCompactedIds();
+		int size = path.size();
+		for (int i = 0; i < size; i++)
+		{
+			if (ids == null)
+				writeWaypoint(path.getWaypoint(i));
+			else if (ids[i] >= 0)
+				writeWaypoint(path.getWaypoint(i), ids);
+		}
+		write('>');
+	}
+
+	public void writeWaypoint(Waypoint wp) throws IOException
+	{
+		writeWaypoint(wp, null);
+	}
+
+	// Writes wp with every id replaced by ids[id], unless ids is null
+	private void writeWaypoint(Waypoint wp, int[] ids) throws IOException
+	{
+		write('{');
+		writeInt(ids == null ? wp.id : ids[wp.id]);
+		write('(');
+		writeInt(wp.x);
+		write(',');
+		writeInt(wp.y);
+		write(')');
+		int edgeCount = wp.getConnectionCount();
+		for (int i = 0; i < edgeCount; i++)
+		{
+			int id = wp.getConnectionId(i);
+			write('[');
+			writeInt(ids == null ? id : ids[id]);
+			write(']');
+		}
+		write('}');
+	}
+
+	// Pushes buffered characters to the underlying Writer and flushes it
+	public void flush() throws IOException
+	{
+		drain();
+		out.flush();
+	}
+
+	public void close() throws IOException
+	{
+		drain();
+		out.close();
+	}
+
+	private void write(char c) throws IOException
+	{
+		if (count == buffer.length)
+			drain();
+		buffer[count++] = c;
+	}
+
+	// Formats value directly into the buffer, same digits as String.valueOf
+	private void writeInt(int value) throws IOException
+	{
+		if (buffer.length - count < MAX_INT_CHARS)
+			drain();
+		if (value < 0)
+			buffer[count++] = '-';
+		else
+			// Work with negative numbers so that Integer.MIN_VALUE fits
+			value = -value;
+		int digits = 1;
+		for (int v = value; v <= -10; v /= 10)
+			digits++;
+		int pos = count + digits;
+		count = pos;
+		do
+		{
+			buffer[--pos] = (char) ('0' - value % 10);
+			value /= 10;
+		}
+		while (value != 0);
+	}
+
+	private void drain() throws IOException
+	{
+		if (count > 0)
+		{
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+
+package com.example.pathmaker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class Metrics
+{
+	public interface Gauge
+	{
+		// Called from whichever thread dumps the metrics
+		long getValue();
+	}
+
+	/*
+	 * Process wide registry of named counters, gauges and latency
+	 * histograms, for finding out where time goes on real devices. Code
+	 * keeps the Counter or LatencyHistogram it registered in a static field
+	 * and updates it on its hot path; dump() writes everything as JSON so
+	 * dumps from different builds can be compared.
+	 * 
+	 * Metrics start out disabled. While disabled every update is a single
+	 * check of a static flag, and timing doesn't read the clock.
+	 */
+
+	// Not volatile: a thread noticing a change a little late doesn't matter,
+	// and hot paths shouldn't pay for a barrier
+	static boolean enabled = false;
+
+	private static final TreeMap<String, Counter> counters =
+			new TreeMap<String, Counter>();
+	private static final TreeMap<String, Gauge> gauges =
+			new TreeMap<String, Gauge>();
+	private static final TreeMap<String, LatencyHistogram> histograms =
+			new TreeMap<String, LatencyHistogram>();
+
+	private Metrics()
+	{
+	}
+
+	public static void setEnabled(boolean enable)
+	{
+		enabled = enable;
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	// Start time for LatencyHistogram.stop(), 0 while disabled
+	public static long start()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	// Returns the counter registered under name, creating it if needed
+	public static synchronized Counter counter(String name)
+	{
+		Counter c = counters.get(name);
+		if (c == null)
+		{
+			c = new Counter();
+			counters.put(name, c);
+		}
+		return c;
+	}
+
+	public static synchronized LatencyHistogram histogram(String name)
+	{
+		LatencyHistogram h = histograms.get(name);
+		if (h == null)
+		{
+			h = new LatencyHistogram();
+			histograms.put(name, h);
+		}
+		return h;
+	}
+
+	// Registers gauge under name, replacing any earlier one. null removes it.
+	public static synchronized void gauge(String name, Gauge gauge)
+	{
+		if (gauge == null)
+			gauges.remove(name);
+		else
+			gauges.put(name, gauge);
+	}
+
+	// Zeroes all counters and histograms
+	public static synchronized void reset()
+	{
+		for (Counter c : counters.values())
+			c.reset();
+		for (LatencyHistogram h : histograms.values())
+			h.reset();
+	}
+
+	public static void dump(File file) throws IOException
+	{
+		Writer out = new OutputStreamWriter(new FileOutputStream(file),
+				"UTF-8");
+		try
+		{
+			dump(out);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	// Writes all metrics as one JSON object. Durations are in nanoseconds;
+	// percentiles are bucket upper bounds (see LatencyHistogram).
+	public static synchronized void dump(Writer out) throws IOException
+	{
+		out.write("{\n  \"time\": " + System.currentTimeMillis());
+		out.write(",\n  \"enabled\": " + enabled);
+
+		out.write(",\n  \"counters\": {");
+		String separator = "\n";
+		for (Map.Entry<String, Counter> e : counters.entrySet())
+		{
+			out.write(separator + "    " + quote(e.getKey()) + ": "
+					+ e.getValue().get());
+			separator = ",\n";
+		}
+		out.write("\n  },\n  \"gauges\": {");
+		separator = "\n";
+		for (Map.Entry<String, Gauge> e : gauges.entrySet())
+		{
+			out.write(separator + "    " + quote(e.getKey()) + ": "
+					+ e.getValue().getValue());
+			separator = ",\n";
+		}
+		out.write("\n  },\n  \"histograms\": {");
+		separator = "\n";
+		for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet())
+		{
+			out.write(separator + "    " + quote(e.getKey()) + ": ");
+			writeHistogram(out, e.getValue());
+			separator = ",\n";
+		}
+		out.write("\n  }\n}\n");
+		out.flush();
+	}
+
+	private static void writeHistogram(Writer out, LatencyHistogram h)
+			throws IOException
+	{
+		long count = h.getCount();
+		out.write("{\"count\": " + count);
+		out.write(", \"mean_ns\": "
+				+ (count == 0 ? 0 : h.getTotalNanos() / count));
+		out.write(", \"p50_ns\": " + h.getPercentileNanos(0.5));
+		out.write(", \"p90_ns\": " + h.getPercentileNanos(0.9));
+		out.write(", \"p99_ns\": " + h.getPercentileNanos(0.99));
+		out.write(", \"max_ns\": " + h.getMaxNanos());
+		// Counts per power of two of nanoseconds, trailing empty ones left
+		// out
+		int last = LatencyHistogram.BUCKETS - 1;
+		while (last >= 0 && h.getBucket(last) == 0)
+			last--;
+		out.write(", \"buckets\": [");
+		for (int i = 0; i <= last; i++)
+			out.write((i > 0 ? ", " : "") + h.getBucket(i));
+		out.write("]}");
+	}
+
+	// Metric names are plain identifiers, only quotes and backslashes need
+	// escaping
+	private static String quote(String s)
+	{
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+}
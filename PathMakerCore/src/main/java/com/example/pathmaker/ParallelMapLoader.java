@@ -0,0 +1,282 @@
+
+package com.example.pathmaker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelMapLoader
+{
+	// Inputs smaller than this aren't worth handing to other threads
+	private static final int MIN_PARALLEL_LENGTH = 64 * 1024;
+	// Chunks per thread, so a few big paths don't leave threads idle
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/*
+	 * Parses the text format with several threads. Edge ids are local to
+	 * their path, so every <...> in a bundle can be parsed on its own. A
+	 * quick scan for the '<' and '>' delimiters (which can't appear inside
+	 * a path) finds the path boundaries, consecutive paths are grouped into
+	 * chunks of similar length, and each chunk is parsed by a MapParser
+	 * limited to its part of the text. The paths are put back together in
+	 * file order.
+	 * 
+	 * The result is the same as MapParser's, errors included: whenever the
+	 * scan finds something unexpected, the input is handed to the sequential
+	 * parser to report it, and chunk errors are reported in file order.
+	 * Files are mapped into memory and read in place as ASCII, nothing is
+	 * copied onto the heap.
+	 */
+
+	private final ExecutorService executor;
+	private final int threads;
+
+	// One thread per available processor
+	public ParallelMapLoader()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelMapLoader(int threadCount)
+	{
+		threads = Math.max(1, threadCount);
+		final AtomicInteger count = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "ParallelMapLoader-"
+						+ count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	// Loads a map file in either format; binary files are read as usual.
+	// Like MapFiles.load, repairs what PathValidator finds.
+	public MapBundle load(File file) throws IOException
+	{
+		return load(file, new ArrayList<PathValidator.Violation>());
+	}
+
+	// Same, adding the repaired violations to repairs
+	public MapBundle load(File file,
+			ArrayList<PathValidator.Violation> repairs) throws IOException
+	{
+		MapBundle bundle;
+		if (MapFiles.isBinary(file))
+			bundle = BinaryMapCodec.load(file);
+		else
+		{
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try
+			{
+				FileChannel channel = raf.getChannel();
+				ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY,
+						0, channel.size());
+				bundle = parse(new AsciiSequence(bytes));
+			}
+			finally
+			{
+				raf.close();
+			}
+		}
+		new PathValidator(true).validate(bundle, repairs);
+		return bundle;
+	}
+
+	// Only parses, the result isn't validated
+
+	public MapBundle parse(CharSequence text) throws IOException
+	{
+		int length = text.length();
+		if (threads == 1 || length < MIN_PARALLEL_LENGTH)
+			return new MapParser(text).parseBundle();
+
+		// Path boundaries: path i is text[starts[i], ends[i])
+		IntList starts = new IntList();
+		IntList ends = new IntList();
+		int pos = 0;
+		if (text.charAt(pos) != '$')
+			return new MapParser(text).parseBundle();
+		pos++;
+		while (pos < length && text.charAt(pos) == '<')
+		{
+			int close = indexOf(text, '>', pos + 1);
+			if (close < 0)
+				return new MapParser(text).parseBundle();
+			starts.add(pos);
+			ends.add(close + 1);
+			pos = close + 1;
+		}
+		if (pos >= length || text.charAt(pos) != '$' || starts.size < 2)
+			return new MapParser(text).parseBundle();
+
+		// Group paths into chunks of roughly equal length
+		int chunkLength = Math.max(1, length / (threads * CHUNKS_PER_THREAD));
+		ArrayList<Future<ArrayList<MapPath>>> chunks =
+				new ArrayList<Future<ArrayList<MapPath>>>();
+		int first = 0;
+		while (first < starts.size)
+		{
+			int last = first;
+			while (last + 1 < starts.size
+					&& ends.get(last + 1) - starts.get(first) <= chunkLength)
+				last++;
+			chunks.add(executor.submit(new Chunk(text, starts, ends, first,
+					last + 1)));
+			first = last + 1;
+		}
+
+		ArrayList<MapPath> paths = new ArrayList<MapPath>(starts.size);
+		try
+		{
+			for (Future<ArrayList<MapPath>> chunk : chunks)
+				paths.addAll(chunk.get());
+		}
+		catch (InterruptedException e)
+		{
+			throw new InterruptedIOException("Cancelled");
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			throw new RuntimeException(cause);
+		}
+		finally
+		{
+			for (Future<ArrayList<MapPath>> chunk : chunks)
+				chunk.cancel(true);
+		}
+		return new MapBundle(paths);
+	}
+
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	private static int indexOf(CharSequence text, char c, int from)
+	{
+		int length = text.length();
+		for (int i = from; i < length; i++)
+		{
+			if (text.charAt(i) == c)
+				return i;
+		}
+		return -1;
+	}
+
+	// Parses paths first to last - 1
+	private static class Chunk implements Callable<ArrayList<MapPath>>
+	{
+		private final CharSequence text;
+		private final IntList starts;
+		private final IntList ends;
+		private final int first;
+		private final int last;
+
+		Chunk(CharSequence text, IntList starts, IntList ends, int first,
+				int last)
+		{
+			this.text = text;
+			this.starts = starts;
+			this.ends = ends;
+			this.first = first;
+			this.last = last;
+		}
+
+		public ArrayList<MapPath> call() throws IOException
+		{
+			ArrayList<MapPath> paths = new ArrayList<MapPath>(last - first);
+			for (int i = first; i < last; i++)
+			{
+				MapParser parser = new MapParser(text, starts.get(i),
+						ends.get(i));
+				paths.add(parser.parsePath());
+			}
+			return paths;
+		}
+	}
+
+	// Growable int array, only written before the chunks are submitted
+	private static class IntList
+	{
+		int[] values = new int[64];
+		int size = 0;
+
+		void add(int value)
+		{
+			if (size == values.length)
+			{
+				int[] grown = new int[size * 2];
+				System.arraycopy(values, 0, grown, 0, size);
+				values = grown;
+			}
+			values[size++] = value;
+		}
+
+		int get(int index)
+		{
+			return values[index];
+		}
+	}
+
+	// The bytes of an ASCII file as characters. Only absolute gets are used,
+	// so any number of threads can read it at once.
+	private static class AsciiSequence implements CharSequence
+	{
+		private final ByteBuffer bytes;
+		private final int start;
+		private final int length;
+
+		AsciiSequence(ByteBuffer bytes)
+		{
+			this(bytes, 0, bytes.limit());
+		}
+
+		private AsciiSequence(ByteBuffer bytes, int start, int length)
+		{
+			this.bytes = bytes;
+			this.start = start;
+			this.length = length;
+		}
+
+		public int length()
+		{
+			return length;
+		}
+
+		public char charAt(int index)
+		{
+			return (char) (bytes.get(start + index) & 0xff);
+		}
+
+		public CharSequence subSequence(int from, int to)
+		{
+			return new AsciiSequence(bytes, start + from, to - from);
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder s = new StringBuilder(length);
+			s.append(this);
+			return s.toString();
+		}
+	}
+}
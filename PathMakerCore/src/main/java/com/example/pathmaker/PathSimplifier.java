@@ -0,0 +1,282 @@
+
+package com.example.pathmaker;
+
+public class PathSimplifier
+{
+	/*
+	 * Shrinks existing paths by removing waypoints that don't change their
+	 * shape by more than a tolerance. Junctions and dead ends (anything whose
+	 * number of connections isn't 2) and the root are always kept. The runs
+	 * of plain waypoints between two kept ones are simplified with
+	 * Douglas-Peucker.
+	 * 
+	 * The path is changed in place with the same edits the editor makes:
+	 * dropped waypoints are deleted, leaving tombstones, and the kept ends of
+	 * each run are connected. Ids don't change, so the edits can be recorded
+	 * in the path's journal like any others; the next snapshot compacts the
+	 * tombstones away.
+	 * 
+	 * A run is never collapsed into a connection its ends already have (or
+	 * into a loop from a waypoint back to itself), so loops survive.
+	 * 
+	 * Not thread safe, but one instance can simplify any number of paths.
+	 */
+
+	private final float toleranceSq;
+	private boolean[] keep;
+	private EdgeSet[] newEdges;
+	private final VisitMarker walked = new VisitMarker();
+	private int[] chain = new int[16];
+	private int[] stack = new int[32];
+
+	public PathSimplifier(float tolerance)
+	{
+		toleranceSq = tolerance * tolerance;
+	}
+
+	// Simplifies every path of bundle and records the edits in journal (if
+	// it isn't null). Returns the number of waypoints removed.
+	public int simplify(MapBundle bundle, MapJournal journal)
+	{
+		int removed = 0;
+		for (int i = 0; i < bundle.paths.size(); i++)
+			removed += simplify(bundle.paths.get(i), i, journal);
+		return removed;
+	}
+
+	public int simplify(MapBundle bundle)
+	{
+		return simplify(bundle, null);
+	}
+
+	// Simplifies path, which is bundle.paths.get(pathIndex) as far as the
+	// journal is concerned. Returns the number of waypoints removed.
+	public int simplify(MapPath path, int pathIndex, MapJournal journal)
+	{
+		FrozenPath f = path.freeze();
+		int size = f.size;
+		keep = new boolean[size];
+		newEdges = new EdgeSet[size];
+		walked.begin(size);
+		// Tombstones are neither kept nor walked, nothing leads to them
+		for (int i = 0; i < size; i++)
+		{
+			if (!f.isDeleted(i) && (i == 0 || !isPlain(f, i)))
+				keep(i);
+		}
+		// Direct connections between kept waypoints go first, so runs know
+		// which connections already exist
+		for (int i = 0; i < size; i++)
+		{
+			if (!keep[i])
+				continue;
+			for (int e = f.offsets[i]; e < f.offsets[i + 1]; e++)
+			{
+				int next = f.targets[e];
+				if (next != i && keep[next])
+					connect(i, next);
+			}
+		}
+		for (int i = 0; i < size; i++)
+		{
+			if (keep[i])
+				walkChains(f, i);
+		}
+		// Whatever hasn't been reached is a closed ring of plain waypoints
+		for (int i = 0; i < size; i++)
+		{
+			if (!walked.isVisited(i) && !keep[i] && !f.isDeleted(i))
+			{
+				keep(i);
+				walkChains(f, i);
+			}
+		}
+		return apply(path, f, pathIndex, journal);
+	}
+
+	private void keep(int id)
+	{
+		keep[id] = true;
+		walked.visit(id);
+		newEdges[id] = new EdgeSet();
+	}
+
+	// Plain waypoints are the ones that just continue a line: two
+	// connections, neither to itself
+	private static boolean isPlain(FrozenPath f, int id)
+	{
+		int e = f.offsets[id];
+		return f.offsets[id + 1] - e == 2 && f.targets[e] != id
+				&& f.targets[e + 1] != id;
+	}
+
+	// Follows every run of plain waypoints leaving kept waypoint start
+	private void walkChains(FrozenPath f, int start)
+	{
+		for (int e = f.offsets[start]; e < f.offsets[start + 1]; e++)
+		{
+			int next = f.targets[e];
+			// Kept neighbors are already connected, and runs that were
+			// walked from their other end are done
+			if (keep[next] || walked.isVisited(next))
+				continue;
+
+			int length = 0;
+			chain = ensure(chain, length + 1);
+			chain[length++] = start;
+			int previous = start;
+			int current = next;
+			while (!keep[current])
+			{
+				walked.visit(current);
+				chain = ensure(chain, length + 1);
+				chain[length++] = current;
+				// Plain waypoints have exactly two connections, take the one
+				// we didn't come from
+				int a = f.targets[f.offsets[current]];
+				int b = f.targets[f.offsets[current] + 1];
+				int following = a == previous ? b : a;
+				previous = current;
+				current = following;
+			}
+			chain = ensure(chain, length + 1);
+			chain[length++] = current;
+			simplifyChain(f, length);
+		}
+	}
+
+	// Douglas-Peucker over chain[0, length), with an explicit stack of
+	// index ranges
+	private void simplifyChain(FrozenPath f, int length)
+	{
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = length - 1;
+		while (top > 0)
+		{
+			int to = stack[--top];
+			int from = stack[--top];
+			int farthest = -1;
+			float maxDistSq = toleranceSq;
+			for (int i = from + 1; i < to; i++)
+			{
+				float d = StrokeSimplifier.distanceToSegmentSq(
+						f.xs[chain[i]], f.ys[chain[i]], f.xs[chain[from]],
+						f.ys[chain[from]], f.xs[chain[to]], f.ys[chain[to]]);
+				if (d > maxDistSq)
+				{
+					farthest = i;
+					maxDistSq = d;
+				}
+			}
+			if (farthest == -1)
+				continue;
+			markKept(chain[farthest]);
+			stack = ensure(stack, top + 4);
+			stack[top++] = from;
+			stack[top++] = farthest;
+			stack[top++] = farthest;
+			stack[top++] = to;
+		}
+
+		// Connect the kept waypoints of the run in order. Where a stretch
+		// would become a self loop or repeat an existing connection, keep
+		// waypoints from its middle instead (a loop needs two).
+		int previous = 0;
+		for (int i = 1; i < length; i++)
+		{
+			if (!keep[chain[i]])
+				continue;
+			int a = chain[previous];
+			int b = chain[i];
+			if (a == b)
+			{
+				int third = previous + (i - previous) / 3;
+				int twoThirds = previous + 2 * (i - previous) / 3;
+				markKept(chain[third]);
+				markKept(chain[twoThirds]);
+				connect(a, chain[third]);
+				connect(chain[third], chain[twoThirds]);
+				a = chain[twoThirds];
+			}
+			else if (i - previous > 1 && newEdges[a].contains(b))
+			{
+				int middle = (previous + i) / 2;
+				markKept(chain[middle]);
+				connect(a, chain[middle]);
+				a = chain[middle];
+			}
+			connect(a, b);
+			previous = i;
+		}
+	}
+
+	private void markKept(int id)
+	{
+		keep[id] = true;
+		newEdges[id] = new EdgeSet();
+	}
+
+	private void connect(int a, int b)
+	{
+		newEdges[a].add(b);
+		newEdges[b].add(a);
+	}
+
+	// Deletes the waypoints that weren't kept, a run of ids at a time, then
+	// adds the connections bridging the deleted stretches
+	private int apply(MapPath path, FrozenPath f, int pathIndex,
+			MapJournal journal)
+	{
+		int size = f.size;
+		int removed = 0;
+		int from = -1;
+		for (int i = 0; i <= size; i++)
+		{
+			if (i < size && !keep[i])
+			{
+				if (from < 0)
+					from = i;
+				if (!f.isDeleted(i))
+					removed++;
+			}
+			else if (from >= 0)
+			{
+				if (journal != null)
+					journal.recordDelete(pathIndex, from, i);
+				path.deleteRange(from, i);
+				from = -1;
+			}
+		}
+		for (int a = 0; a < size; a++)
+		{
+			if (!keep[a])
+				continue;
+			Waypoint wa = path.getWaypoint(a);
+			EdgeSet edges = newEdges[a];
+			for (int j = 0; j < edges.size(); j++)
+			{
+				int b = edges.get(j);
+				if (wa.hasConnection(b))
+					continue;
+				if (journal != null)
+					journal.recordConnect(pathIndex, a, pathIndex, b);
+				Waypoint wb = path.getWaypoint(b);
+				wa.addConnection(wb);
+				wb.addConnection(wa);
+			}
+		}
+		keep = null;
+		newEdges = null;
+		return removed;
+	}
+
+	private static int[] ensure(int[] array, int size)
+	{
+		if (array.length >= size)
+			return array;
+		int[] bigger = new int[Math.max(size, array.length * 2)];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+}
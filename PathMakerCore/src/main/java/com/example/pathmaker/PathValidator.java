@@ -0,0 +1,180 @@
+
+package com.example.pathmaker;
+
+import java.util.ArrayList;
+
+public class PathValidator
+{
+	// Kinds of Violation
+	// The id stored with a waypoint isn't its index in the path
+	public static final int WRONG_ID = 0;
+	// An edge points outside the path
+	public static final int DANGLING_EDGE = 1;
+	// A waypoint is connected to itself
+	public static final int SELF_LOOP = 2;
+	// The waypoint an edge points to has no edge back
+	public static final int ONE_WAY_EDGE = 3;
+	// The file listed an edge more than once
+	public static final int REPEATED_EDGE = 4;
+
+	/*
+	 * Checks the invariants everything else relies on: waypoint ids are list
+	 * indices, and edges are undirected connections between two different
+	 * waypoints of the same path. The editor can't break these, but a corrupt
+	 * or hand-edited file can, and a dangling edge then only shows up as an
+	 * IndexOutOfBoundsException when the path is frozen for drawing.
+	 * 
+	 * Each path is checked in one pass over its waypoints and edges.
+	 * Checking for the reverse of an edge is a lookup in the target's EdgeSet,
+	 * so the whole pass is O(waypoints + edges). In repair mode, wrong ids are
+	 * reset, one-way edges get their missing reverse and waypoints with bad
+	 * edges are flagged in a bitset, and the dangling edges and self loops
+	 * are then dropped from the flagged waypoints only. Repeated edges
+	 * never reach a path, EdgeSet drops them as they are added; the parsers
+	 * note them in MapPath.repeatedEdges so they are still reported here.
+	 */
+
+	public static class Violation
+	{
+		public final int type;
+		public final int pathIndex;
+		public final int waypointId;
+		// Target of the offending edge, or the stored id for WRONG_ID
+		public final int edgeToId;
+
+		Violation(int kind, int path, int waypoint, int edgeTo)
+		{
+			type = kind;
+			pathIndex = path;
+			waypointId = waypoint;
+			edgeToId = edgeTo;
+		}
+
+		@Override
+		public String toString()
+		{
+			String where = "path " + pathIndex + ", waypoint " + waypointId
+					+ ": ";
+			switch (type)
+			{
+			case WRONG_ID:
+				return where + "stored with id " + edgeToId;
+			case DANGLING_EDGE:
+				return where + "edge to missing waypoint " + edgeToId;
+			case SELF_LOOP:
+				return where + "connected to itself";
+			case REPEATED_EDGE:
+				return where + "edge to " + edgeToId + " listed again";
+			default:
+				return where + "edge to " + edgeToId + " has no reverse";
+			}
+		}
+	}
+
+	private final boolean repair;
+
+	// With repair set, every violation found is also fixed
+	public PathValidator(boolean repair)
+	{
+		this.repair = repair;
+	}
+
+	// Checks every path of bundle, returns the violations in path order
+	public ArrayList<Violation> validate(MapBundle bundle)
+	{
+		ArrayList<Violation> violations = new ArrayList<Violation>();
+		validate(bundle, violations);
+		return violations;
+	}
+
+	// Same, adding them to out. Returns how many there were.
+	public int validate(MapBundle bundle, ArrayList<Violation> out)
+	{
+		int found = 0;
+		for (int i = 0; i < bundle.paths.size(); i++)
+			found += validate(bundle.paths.get(i), i, out);
+		return found;
+	}
+
+	// Adds the violations found in path to out, returns how many there were
+	public int validate(MapPath path, int pathIndex, ArrayList<Violation> out)
+	{
+		int found = out.size();
+		int size = path.size();
+		// Waypoints that have edges to drop
+		long[] flagged = new long[(size + 63) >>> 6];
+		boolean anyFlagged = false;
+
+		// Already dropped, so there's nothing left to repair
+		int[] repeated = path.repeatedEdges;
+		if (repeated != null)
+		{
+			for (int i = 0; i < repeated.length; i += 2)
+				out.add(new Violation(REPEATED_EDGE, pathIndex, repeated[i],
+						repeated[i + 1]));
+			if (repair)
+				path.repeatedEdges = null;
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			Waypoint wp = path.getWaypoint(i);
+			if (wp.id != i)
+			{
+				out.add(new Violation(WRONG_ID, pathIndex, i, wp.id));
+				if (repair)
+					wp.id = i;
+			}
+			int count = wp.getConnectionCount();
+			for (int j = 0; j < count; j++)
+			{
+				int to = wp.getConnectionId(j);
+				if (to < 0 || to >= size || to == i)
+				{
+					out.add(new Violation(to == i ? SELF_LOOP : DANGLING_EDGE,
+							pathIndex, i, to));
+					flagged[i >>> 6] |= 1L << i;
+					anyFlagged = true;
+				}
+				else if (!path.getWaypoint(to).hasConnection(i))
+				{
+					out.add(new Violation(ONE_WAY_EDGE, pathIndex, i, to));
+					// Only to's set grows, so wp's edges stay put
+					if (repair)
+						path.getWaypoint(to).addConnection(wp);
+				}
+			}
+		}
+
+		if (repair && anyFlagged)
+		{
+			for (int w = 0; w < flagged.length; w++)
+			{
+				long bits = flagged[w];
+				while (bits != 0)
+				{
+					int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					dropBadEdges(path.getWaypoint(i), size);
+				}
+			}
+		}
+		found = out.size() - found;
+		// Ids were wrong, so the changes may have been marked at the wrong
+		// waypoints
+		if (repair && found > 0)
+			path.markChanged(0);
+		return found;
+	}
+
+	private static void dropBadEdges(Waypoint wp, int size)
+	{
+		// Backwards, so removals don't move the edges still to be checked
+		for (int j = wp.getConnectionCount() - 1; j >= 0; j--)
+		{
+			int to = wp.getConnectionId(j);
+			if (to < 0 || to >= size || to == wp.id)
+				wp.removeConnection(to);
+		}
+	}
+}
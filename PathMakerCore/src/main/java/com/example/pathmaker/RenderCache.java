@@ -0,0 +1,91 @@
+
+package com.example.pathmaker;
+
+import java.util.ArrayList;
+
+public class RenderCache
+{
+	/*
+	 * Keeps the DrawList of every path between frames. Editing code calls
+	 * markDirty() whenever it changes the graph; until then update() returns
+	 * right away, so a frame where nothing changed doesn't walk any path.
+	 * When dirty, only paths whose frozen form changed are rebuilt.
+	 * 
+	 * Each DrawList also gets a SegmentGrid so that a frame only has to copy
+	 * out the geometry inside the camera window (see cull()).
+	 */
+
+	private static final int GRID_CELL_SIZE = 256;
+
+	private final DrawListBuilder builder = new DrawListBuilder();
+	private final ArrayList<DrawList> lists = new ArrayList<DrawList>();
+	private final ArrayList<SegmentGrid> grids = new ArrayList<SegmentGrid>();
+	// FrozenPath each list was built from
+	private final ArrayList<FrozenPath> sources = new ArrayList<FrozenPath>();
+	private boolean dirty = true;
+
+	public void markDirty()
+	{
+		dirty = true;
+	}
+
+	public boolean isDirty()
+	{
+		return dirty;
+	}
+
+	// Brings the cached geometry in line with snapshot, returns true if any
+	// DrawList was rebuilt
+	public boolean update(MapSnapshot snapshot)
+	{
+		if (!dirty)
+			return false;
+		boolean rebuilt = false;
+		int count = snapshot.getPathCount();
+		for (int i = 0; i < count; i++)
+		{
+			FrozenPath frozen = snapshot.getPath(i);
+			if (i == lists.size())
+			{
+				lists.add(new DrawList());
+				grids.add(new SegmentGrid(GRID_CELL_SIZE));
+				sources.add(null);
+			}
+			if (sources.get(i) != frozen)
+			{
+				builder.build(frozen, lists.get(i));
+				grids.get(i).build(lists.get(i));
+				sources.set(i, frozen);
+				rebuilt = true;
+			}
+		}
+		// Drop entries of paths that were removed or merged
+		while (sources.size() > count)
+		{
+			sources.remove(sources.size() - 1);
+			lists.remove(lists.size() - 1);
+			grids.remove(grids.size() - 1);
+			rebuilt = true;
+		}
+		dirty = false;
+		return rebuilt;
+	}
+
+	public int size()
+	{
+		return lists.size();
+	}
+
+	public DrawList get(int index)
+	{
+		return lists.get(index);
+	}
+
+	// Copies the part of path index's geometry that overlaps the given
+	// rectangle (in map coordinates) into out
+	public void cull(int index, float left, float top, float right,
+			float bottom, DrawList out)
+	{
+		grids.get(index).query(left, top, right, bottom, out);
+	}
+}
@@ -0,0 +1,16 @@
+
+package com.example.pathmaker;
+
+public class Route
+{
+	// Waypoint ids from start to destination (both included), and the sum of
+	// the straight line lengths between them
+	public final int[] waypointIds;
+	public final float length;
+
+	public Route(int[] ids, float len)
+	{
+		waypointIds = ids;
+		length = len;
+	}
+}
@@ -0,0 +1,108 @@
+
+package com.example.pathmaker;
+
+public class RouteFinder
+{
+	/*
+	 * A* search over a (frozen) MapPath, where each edge costs the straight line
+	 * distance between its waypoints (so the straight line distance to the
+	 * destination is an admissible heuristic).
+	 * 
+	 * All per-node state lives in primitive arrays indexed by waypoint id and
+	 * the open set is an IntMinHeap of ids, so a search allocates nothing but
+	 * the returned Route. Instead of clearing the arrays between searches, a
+	 * VisitMarker tells which entries belong to the current search. The
+	 * arrays only grow, so after the first search on the largest path there
+	 * are no further allocations.
+	 * 
+	 * Not thread safe: use one RouteFinder per thread.
+	 */
+
+	private final VisitMarker seen = new VisitMarker();
+	private final IntMinHeap open = new IntMinHeap();
+	private float[] cost = new float[0];
+	private float[] estimate = new float[0];
+	private int[] parent = new int[0];
+
+	// Returns the shortest route between the two waypoints, or null if they
+	// aren't connected. Only for the editing thread; others should search
+	// the paths of a MapSnapshot.
+	public Route findRoute(MapPath path, int fromId, int toId)
+	{
+		return findRoute(path.freeze(), fromId, toId);
+	}
+
+	public Route findRoute(FrozenPath path, int fromId, int toId)
+	{
+		int size = path.size;
+		if (fromId < 0 || fromId >= size || toId < 0 || toId >= size)
+			throw new IndexOutOfBoundsException("No waypoint " + fromId
+					+ " or " + toId + " in path of size " + size);
+		prepare(size);
+
+		int[] offsets = path.offsets;
+		int[] targets = path.targets;
+		float[] lengths = path.lengths;
+		touch(path, fromId, 0f, -1, toId);
+		while (!open.isEmpty())
+		{
+			int current = open.pop();
+			if (current == toId)
+				return buildRoute(toId);
+
+			int end = offsets[current + 1];
+			for (int e = offsets[current]; e < end; e++)
+			{
+				int next = targets[e];
+				float newCost = cost[current] + lengths[e];
+				if (seen.visit(next))
+					touch(path, next, newCost, current, toId);
+				// Closed once it has left the queue
+				else if (newCost < cost[next] && open.contains(next))
+				{
+					estimate[next] += newCost - cost[next];
+					cost[next] = newCost;
+					parent[next] = current;
+					open.update(next, estimate[next]);
+				}
+			}
+		}
+		return null;
+	}
+
+	private void prepare(int size)
+	{
+		if (cost.length < size)
+		{
+			int capacity = Math.max(size, cost.length * 2);
+			cost = new float[capacity];
+			estimate = new float[capacity];
+			parent = new int[capacity];
+		}
+		seen.begin(size);
+		open.clear(size);
+	}
+
+	// Records the first way found to id and queues it
+	private void touch(FrozenPath path, int id, float c, int from, int toId)
+	{
+		float dx = path.xs[toId] - path.xs[id];
+		float dy = path.ys[toId] - path.ys[id];
+		seen.visit(id);
+		cost[id] = c;
+		estimate[id] = c + (float) Math.sqrt(dx * dx + dy * dy);
+		parent[id] = from;
+		open.push(id, estimate[id]);
+	}
+
+	private Route buildRoute(int toId)
+	{
+		int hops = 1;
+		for (int id = toId; parent[id] != -1; id = parent[id])
+			hops++;
+		int[] ids = new int[hops];
+		for (int id = toId; id != -1; id = parent[id])
+			ids[--hops] = id;
+		return new Route(ids, cost[toId]);
+	}
+}
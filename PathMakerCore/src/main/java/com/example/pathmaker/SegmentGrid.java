@@ -0,0 +1,218 @@
+
+package com.example.pathmaker;
+
+import java.util.Arrays;
+
+public class SegmentGrid
+{
+	private static final int MAX_CELLS = 1 << 16;
+
+	/*
+	 * Buckets the segments and points of a DrawList into a uniform grid so
+	 * that drawing can ask for just what overlaps the camera window. A
+	 * segment is listed in every cell its bounding box touches; a per-segment
+	 * stamp makes sure it's still only returned once per query. The buckets
+	 * are stored in flat arrays (cellStart[c] to cellStart[c + 1] index into
+	 * the id array), built with one counting pass and one filling pass.
+	 */
+
+	private final int preferredCellSize;
+	private float cellSize;
+	private float originX;
+	private float originY;
+	private int columns = 0;
+	private int rows = 0;
+	private int[] segmentStart = new int[1];
+	private int[] segmentIds = new int[0];
+	private int[] pointStart = new int[1];
+	private int[] pointIds = new int[0];
+	private DrawList source;
+	private final VisitMarker seen = new VisitMarker();
+
+	public SegmentGrid(int cell)
+	{
+		preferredCellSize = cell;
+	}
+
+	public void build(DrawList list)
+	{
+		source = list;
+		int segmentCount = list.getSegmentCount();
+		int pointCount = list.getPointCount();
+		float[] segments = list.segments;
+		float[] points = list.points;
+		if (pointCount == 0 && segmentCount == 0)
+		{
+			columns = 0;
+			rows = 0;
+			return;
+		}
+
+		float minX = Float.MAX_VALUE;
+		float minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE;
+		float maxY = -Float.MAX_VALUE;
+		for (int i = 0; i < list.segmentFloats; i += 2)
+		{
+			minX = Math.min(minX, segments[i]);
+			maxX = Math.max(maxX, segments[i]);
+			minY = Math.min(minY, segments[i + 1]);
+			maxY = Math.max(maxY, segments[i + 1]);
+		}
+		for (int i = 0; i < list.pointFloats; i += 2)
+		{
+			minX = Math.min(minX, points[i]);
+			maxX = Math.max(maxX, points[i]);
+			minY = Math.min(minY, points[i + 1]);
+			maxY = Math.max(maxY, points[i + 1]);
+		}
+		originX = minX;
+		originY = minY;
+		// Stray far away points shouldn't blow up the number of cells
+		cellSize = preferredCellSize;
+		while (true)
+		{
+			columns = (int) ((maxX - minX) / cellSize) + 1;
+			rows = (int) ((maxY - minY) / cellSize) + 1;
+			if ((long) columns * rows <= MAX_CELLS)
+				break;
+			cellSize *= 2;
+		}
+		int cells = columns * rows;
+
+		// Count entries per cell, turn counts into start offsets, then fill
+		segmentStart = resize(segmentStart, cells + 1);
+		for (int s = 0; s < segmentCount; s++)
+			forEachCell(s, segments, segmentStart, null);
+		int total = prefixSum(segmentStart, cells);
+		segmentIds = resize(segmentIds, total);
+		for (int s = 0; s < segmentCount; s++)
+			forEachCell(s, segments, segmentStart, segmentIds);
+		shiftBack(segmentStart, cells);
+
+		pointStart = resize(pointStart, cells + 1);
+		for (int p = 0; p < pointCount; p++)
+			pointStart[cellOf(points[2 * p], points[2 * p + 1]) + 1]++;
+		prefixSum(pointStart, cells);
+		pointIds = resize(pointIds, pointCount);
+		for (int p = 0; p < pointCount; p++)
+			pointIds[pointStart[cellOf(points[2 * p], points[2 * p + 1])]++] = p;
+		shiftBack(pointStart, cells);
+	}
+
+	// Copies the segments and points that overlap the rectangle into out
+	public void query(float left, float top, float right, float bottom,
+			DrawList out)
+	{
+		out.clear();
+		if (columns == 0)
+			return;
+		int minCol = clamp((int) Math.floor((left - originX) / cellSize),
+				columns);
+		int maxCol = clamp((int) Math.floor((right - originX) / cellSize),
+				columns);
+		int minRow = clamp((int) Math.floor((top - originY) / cellSize), rows);
+		int maxRow = clamp((int) Math.floor((bottom - originY) / cellSize),
+				rows);
+		seen.begin(source.getSegmentCount());
+		float[] segments = source.segments;
+		float[] points = source.points;
+		for (int row = minRow; row <= maxRow; row++)
+		{
+			for (int col = minCol; col <= maxCol; col++)
+			{
+				int cell = row * columns + col;
+				for (int i = segmentStart[cell]; i < segmentStart[cell + 1]; i++)
+				{
+					int s = segmentIds[i];
+					if (!seen.visit(s))
+						continue;
+					int f = 4 * s;
+					float x0 = segments[f];
+					float y0 = segments[f + 1];
+					float x1 = segments[f + 2];
+					float y1 = segments[f + 3];
+					if (Math.max(x0, x1) >= left && Math.min(x0, x1) <= right
+							&& Math.max(y0, y1) >= top
+							&& Math.min(y0, y1) <= bottom)
+						out.addSegment(x0, y0, x1, y1);
+				}
+				for (int i = pointStart[cell]; i < pointStart[cell + 1]; i++)
+				{
+					int f = 2 * pointIds[i];
+					float x = points[f];
+					float y = points[f + 1];
+					if (x >= left && x <= right && y >= top && y <= bottom)
+						out.addPoint(x, y);
+				}
+			}
+		}
+	}
+
+	// With ids == null counts segment s into every cell its bounding box
+	// touches, otherwise stores s at each of those cells' next free slot
+	private void forEachCell(int s, float[] segments, int[] start, int[] ids)
+	{
+		int f = 4 * s;
+		int c0 = column(Math.min(segments[f], segments[f + 2]));
+		int c1 = column(Math.max(segments[f], segments[f + 2]));
+		int r0 = row(Math.min(segments[f + 1], segments[f + 3]));
+		int r1 = row(Math.max(segments[f + 1], segments[f + 3]));
+		for (int r = r0; r <= r1; r++)
+		{
+			for (int c = c0; c <= c1; c++)
+			{
+				int cell = r * columns + c;
+				if (ids == null)
+					start[cell + 1]++;
+				else
+					ids[start[cell]++] = s;
+			}
+		}
+	}
+
+	private int cellOf(float x, float y)
+	{
+		return row(y) * columns + column(x);
+	}
+
+	private int column(float x)
+	{
+		return clamp((int) ((x - originX) / cellSize), columns);
+	}
+
+	private int row(float y)
+	{
+		return clamp((int) ((y - originY) / cellSize), rows);
+	}
+
+	private static int clamp(int value, int count)
+	{
+		return Math.max(0, Math.min(value, count - 1));
+	}
+
+	// Turns per-cell counts stored at start[c + 1] into start offsets,
+	// returns the total
+	private static int prefixSum(int[] start, int cells)
+	{
+		start[0] = 0;
+		for (int c = 0; c < cells; c++)
+			start[c + 1] += start[c];
+		return start[cells];
+	}
+
+	// Filling advanced every start[c] to the next cell's start, undo that
+	private static void shiftBack(int[] start, int cells)
+	{
+		System.arraycopy(start, 0, start, 1, cells);
+		start[0] = 0;
+	}
+
+	private static int[] resize(int[] array, int size)
+	{
+		if (array.length < size)
+			return new int[size];
+		Arrays.fill(array, 0, size, 0);
+		return array;
+	}
+}
@@ -0,0 +1,131 @@
+
+package com.example.pathmaker;
+
+public class StrokeSimplifier
+{
+	private static final int MAX_PENDING = 64;
+
+	public interface Sink
+	{
+		// Called for each point of the stroke that should become a waypoint
+		void commit(int x, int y);
+	}
+
+	/*
+	 * Simplifies a stroke while it's being drawn. Points since the last
+	 * committed one are held back as long as all of them lie within tolerance
+	 * of the straight line from the last committed point to the newest point
+	 * (the same test Douglas-Peucker applies to a chord). Once a new point
+	 * breaks that, the point before it is committed and becomes the start of
+	 * the next run. A straight stroke therefore turns into just its two ends,
+	 * while curves keep as many points as they need.
+	 * 
+	 * At most MAX_PENDING points are held back, which bounds both the memory
+	 * and the work per point.
+	 */
+
+	private final float toleranceSq;
+	private final Sink sink;
+	private final int[] pendingX = new int[MAX_PENDING];
+	private final int[] pendingY = new int[MAX_PENDING];
+	private int pending = 0;
+	private int anchorX;
+	private int anchorY;
+	private boolean active = false;
+
+	public StrokeSimplifier(float tolerance, Sink output)
+	{
+		toleranceSq = tolerance * tolerance;
+		sink = output;
+	}
+
+	// Starts a stroke at a point that is already a waypoint
+	public void begin(int x, int y)
+	{
+		anchorX = x;
+		anchorY = y;
+		pending = 0;
+		active = true;
+	}
+
+	public void add(int x, int y)
+	{
+		if (!active)
+			return;
+		if (pending == MAX_PENDING || !fitsChord(x, y))
+			commitLast();
+		pendingX[pending] = x;
+		pendingY[pending] = y;
+		pending++;
+	}
+
+	// Commits whatever is still held back and ends the stroke
+	public void finish()
+	{
+		if (active && pending > 0)
+			commitLast();
+		active = false;
+	}
+
+	// Drops whatever is still held back and ends the stroke
+	public void cancel()
+	{
+		pending = 0;
+		active = false;
+	}
+
+	public boolean hasPending()
+	{
+		return active && pending > 0;
+	}
+
+	// Newest point of the stroke that isn't a waypoint yet (only valid if
+	// hasPending())
+	public int getPendingX()
+	{
+		return pendingX[pending - 1];
+	}
+
+	public int getPendingY()
+	{
+		return pendingY[pending - 1];
+	}
+
+	// True if every held back point is within tolerance of the line from the
+	// anchor to (x, y)
+	private boolean fitsChord(int x, int y)
+	{
+		for (int i = 0; i < pending; i++)
+		{
+			if (distanceToSegmentSq(pendingX[i], pendingY[i], anchorX,
+					anchorY, x, y) > toleranceSq)
+				return false;
+		}
+		return true;
+	}
+
+	private void commitLast()
+	{
+		int x = pendingX[pending - 1];
+		int y = pendingY[pending - 1];
+		pending = 0;
+		anchorX = x;
+		anchorY = y;
+		sink.commit(x, y);
+	}
+
+	static float distanceToSegmentSq(float px, float py, float ax, float ay,
+			float bx, float by)
+	{
+		float dx = bx - ax;
+		float dy = by - ay;
+		float lengthSq = dx * dx + dy * dy;
+		float t = 0f;
+		if (lengthSq > 0f)
+			t = Math.max(0f, Math.min(1f, ((px - ax) * dx + (py - ay) * dy)
+					/ lengthSq));
+		float ex = ax + t * dx - px;
+		float ey = ay + t * dy - py;
+		return ex * ex + ey * ey;
+	}
+}
@@ -0,0 +1,271 @@
+
+package com.example.pathmaker;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class TileCache<T>
+{
+	// A tile that failed to decode isn't asked for again before this
+	private static final long RETRY_DELAY_MS = 2000;
+	// How long close() waits for the tile being decoded
+	private static final long CLOSE_TIMEOUT_MS = 1000;
+
+	public interface Decoder<T>
+	{
+		// Called on the cache's background thread
+		T decode(int key) throws IOException;
+
+		int sizeOf(T tile);
+
+		// Called on the thread using the cache once a tile was evicted
+		void release(T tile);
+	}
+
+	public interface Listener
+	{
+		// Called on the background thread when a requested tile is ready
+		void onTileLoaded(int key);
+	}
+
+	/*
+	 * Keeps decoded tiles of a large image in memory, least recently used
+	 * first out once their total size goes over maxBytes. Tiles are only
+	 * decoded on request, one at a time on a background thread.
+	 * 
+	 * Each request() replaces the previous one, so while the camera moves
+	 * the queue only ever holds the tiles wanted for the latest position
+	 * instead of piling up tiles that have scrolled out of view.
+	 * 
+	 * get(), request() and close() belong to one thread (the UI thread).
+	 * Evicted tiles are only released from within request() and close(), so
+	 * a tile returned by get() stays usable until the next request(). A tile
+	 * that is still being decoded when the cache is closed is waited for and
+	 * released by close() as well.
+	 * 
+	 * A tile that fails to decode (often for lack of memory) is left out of
+	 * the requests made in the next RETRY_DELAY_MS, then tried again.
+	 */
+
+	private final Decoder<T> decoder;
+	private final Listener listener;
+	private final long maxBytes;
+	private final LinkedHashMap<Integer, T> tiles;
+	private final LinkedList<Integer> pending = new LinkedList<Integer>();
+	// When each tile that failed to decode did so, in ms
+	private final HashMap<Integer, Long> failed = new HashMap<Integer, Long>();
+	private final long retryDelay;
+	private final ExecutorService executor;
+	// Decoded after close(), left for close() to release
+	private T late = null;
+	private long bytes = 0;
+	private int decoding = -1;
+	private boolean working = false;
+	private boolean closed = false;
+
+	public TileCache(Decoder<T> decoder, Listener listener, long maxBytes)
+	{
+		this(decoder, listener, maxBytes, RETRY_DELAY_MS);
+	}
+
+	TileCache(Decoder<T> decoder, Listener listener, long maxBytes,
+			long retryDelayMs)
+	{
+		this.decoder = decoder;
+		this.listener = listener;
+		this.maxBytes = maxBytes;
+		retryDelay = retryDelayMs;
+		// Iterates in access order, least recently used first
+		tiles = new LinkedHashMap<Integer, T>(16, 0.75f, true);
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "TileCache");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	// Returns the tile if it's loaded, null otherwise
+	public synchronized T get(int key)
+	{
+		return tiles.get(key);
+	}
+
+	public synchronized boolean contains(int key)
+	{
+		return tiles.containsKey(key);
+	}
+
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+	public synchronized int size()
+	{
+		return tiles.size();
+	}
+
+	// Asks for the first count keys, most important first. Missing tiles are
+	// decoded in that order; tiles asked for earlier but not now are dropped
+	// from the queue. Also evicts tiles as needed to get back under budget,
+	// never any of the tiles asked for.
+	public synchronized void request(int[] keys, int count)
+	{
+		pending.clear();
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < count; i++)
+		{
+			Integer key = keys[i];
+			if (tiles.containsKey(key))
+				tiles.get(key); // Counts as a use for the LRU order
+			else if (key != decoding && !isFailed(key, now))
+				pending.add(key);
+		}
+		trim(keys, count);
+		if (!working && !pending.isEmpty() && !closed)
+		{
+			working = true;
+			executor.execute(new Runnable()
+			{
+				public void run()
+				{
+					work();
+				}
+			});
+		}
+	}
+
+	// Releases every tile and stops decoding
+	public void close()
+	{
+		synchronized (this)
+		{
+			closed = true;
+			pending.clear();
+			for (T tile : tiles.values())
+				decoder.release(tile);
+			tiles.clear();
+			bytes = 0;
+		}
+		executor.shutdown();
+		try
+		{
+			executor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		// A decode that takes even longer leaves its tile to the garbage
+		// collector
+		synchronized (this)
+		{
+			if (late != null)
+				decoder.release(late);
+			late = null;
+		}
+	}
+
+	// Whether key failed too recently to be tried again
+	private boolean isFailed(Integer key, long now)
+	{
+		Long time = failed.get(key);
+		if (time == null)
+			return false;
+		if (now - time < retryDelay)
+			return true;
+		failed.remove(key);
+		return false;
+	}
+
+	private void trim(int[] keep, int keepCount)
+	{
+		Iterator<Map.Entry<Integer, T>> it = tiles.entrySet().iterator();
+		while (bytes > maxBytes && it.hasNext())
+		{
+			Map.Entry<Integer, T> entry = it.next();
+			if (indexOf(keep, keepCount, entry.getKey()) >= 0)
+				continue;
+			bytes -= decoder.sizeOf(entry.getValue());
+			decoder.release(entry.getValue());
+			it.remove();
+		}
+	}
+
+	private static int indexOf(int[] keys, int count, int key)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			if (keys[i] == key)
+				return i;
+		}
+		return -1;
+	}
+
+	// Decodes pending tiles until there are none left
+	private void work()
+	{
+		while (true)
+		{
+			int key;
+			synchronized (this)
+			{
+				if (pending.isEmpty() || closed)
+				{
+					working = false;
+					return;
+				}
+				key = pending.removeFirst();
+				decoding = key;
+			}
+			T tile = null;
+			try
+			{
+				tile = decoder.decode(key);
+			}
+			catch (IOException e)
+			{
+				// Handled below
+			}
+			catch (RuntimeException e)
+			{
+				// Don't let a bad tile stop the thread for the others
+			}
+			catch (OutOfMemoryError e)
+			{
+				// Same, the budget is better spent on the other tiles
+			}
+			synchronized (this)
+			{
+				decoding = -1;
+				if (closed && tile != null)
+				{
+					// Released by close(), on the thread using the cache
+					late = tile;
+					tile = null;
+				}
+				else if (tile == null)
+					failed.put(key, System.currentTimeMillis());
+				else
+				{
+					tiles.put(key, tile);
+					bytes += decoder.sizeOf(tile);
+				}
+			}
+			if (tile != null)
+				listener.onTileLoaded(key);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+
+package com.example.pathmaker;
+
+public class TileGrid
+{
+	/*
+	 * Splits an image into square tiles of tileSize pixels (the tiles along
+	 * the right and bottom edge may be smaller). Each tile is identified by
+	 * a key, row * columns + column, which is what TileCache stores them by.
+	 */
+
+	public final int tileSize;
+	public final int width;
+	public final int height;
+	public final int columns;
+	public final int rows;
+
+	public TileGrid(int tileSize, int width, int height)
+	{
+		this.tileSize = tileSize;
+		this.width = width;
+		this.height = height;
+		columns = (width + tileSize - 1) / tileSize;
+		rows = (height + tileSize - 1) / tileSize;
+	}
+
+	public int getTileCount()
+	{
+		return columns * rows;
+	}
+
+	public int getKey(int column, int row)
+	{
+		return row * columns + column;
+	}
+
+	public int getColumn(int key)
+	{
+		return key % columns;
+	}
+
+	public int getRow(int key)
+	{
+		return key / columns;
+	}
+
+	public int getLeft(int key)
+	{
+		return getColumn(key) * tileSize;
+	}
+
+	public int getTop(int key)
+	{
+		return getRow(key) * tileSize;
+	}
+
+	public int getWidth(int key)
+	{
+		return Math.min(tileSize, width - getLeft(key));
+	}
+
+	public int getHeight(int key)
+	{
+		return Math.min(tileSize, height - getTop(key));
+	}
+
+	// Most keys collect() can return for a window of the given size
+	public int getMaxTiles(float windowWidth, float windowHeight, int margin)
+	{
+		int across = (int) Math.ceil(windowWidth / tileSize) + 1 + 2 * margin;
+		int down = (int) Math.ceil(windowHeight / tileSize) + 1 + 2 * margin;
+		return Math.min(across, columns) * Math.min(down, rows);
+	}
+
+	// Puts the keys of the tiles overlapping the rectangle (in image
+	// coordinates) into out, followed by those of the tiles up to margin
+	// tiles around it, so that the visible ones come first. Returns the
+	// number of keys and the number of visible ones is returned through
+	// visibleCount[0] if it isn't null.
+	public int collect(float left, float top, float right, float bottom,
+			int margin, int[] out, int[] visibleCount)
+	{
+		int c0 = clamp((int) Math.floor(left / tileSize), columns);
+		int c1 = clamp((int) Math.floor(right / tileSize), columns);
+		int r0 = clamp((int) Math.floor(top / tileSize), rows);
+		int r1 = clamp((int) Math.floor(bottom / tileSize), rows);
+		int n = 0;
+		for (int r = r0; r <= r1; r++)
+			for (int c = c0; c <= c1; c++)
+				out[n++] = getKey(c, r);
+		if (visibleCount != null)
+			visibleCount[0] = n;
+
+		int mc0 = Math.max(0, c0 - margin);
+		int mc1 = Math.min(columns - 1, c1 + margin);
+		int mr0 = Math.max(0, r0 - margin);
+		int mr1 = Math.min(rows - 1, r1 + margin);
+		for (int r = mr0; r <= mr1; r++)
+		{
+			for (int c = mc0; c <= mc1; c++)
+			{
+				if (r < r0 || r > r1 || c < c0 || c > c1)
+					out[n++] = getKey(c, r);
+			}
+		}
+		return n;
+	}
+
+	private static int clamp(int index, int count)
+	{
+		return Math.max(0, Math.min(count - 1, index));
+	}
+}
@@ -0,0 +1,70 @@
+
+package com.example.pathmaker;
+
+public class TouchSampler
+{
+	public interface Listener
+	{
+		// Called for each sample that is far enough from the previous one
+		void onSample(int x, int y);
+	}
+
+	/*
+	 * Thins out raw touch samples to points at least minDist apart. Android
+	 * batches the samples it collected between two frames into one
+	 * ACTION_MOVE, and only the newest is returned by getX()/getY(), so the
+	 * historical ones have to be fed in too or fast strokes cut corners.
+	 * 
+	 * Only the last emitted point is kept, so nothing is allocated per sample.
+	 * Samples older than the newest one seen are dropped.
+	 */
+
+	private final float minDistSq;
+	private final Listener listener;
+	private float lastX;
+	private float lastY;
+	private long lastTime;
+	private boolean active = false;
+
+	public TouchSampler(float minDist, Listener output)
+	{
+		minDistSq = minDist * minDist;
+		listener = output;
+	}
+
+	// Starts measuring from (x, y), usually the waypoint a stroke starts at
+	public void begin(float x, float y, long time)
+	{
+		lastX = x;
+		lastY = y;
+		lastTime = time;
+		active = true;
+	}
+
+	public void end()
+	{
+		active = false;
+	}
+
+	public void add(float x, float y, long time)
+	{
+		if (!active || time < lastTime)
+			return;
+		lastTime = time;
+		float dx = x - lastX;
+		float dy = y - lastY;
+		if (dx * dx + dy * dy > minDistSq)
+		{
+			lastX = x;
+			lastY = y;
+			listener.onSample((int) x, (int) y);
+		}
+	}
+
+	// Feeds count samples, oldest first
+	public void addBatch(float[] xs, float[] ys, long[] times, int count)
+	{
+		for (int i = 0; i < count; i++)
+			add(xs[i], ys[i], times[i]);
+	}
+}
@@ -0,0 +1,50 @@
+
+package com.example.pathmaker;
+
+import java.util.Arrays;
+
+public class VisitMarker
+{
+	/*
+	 * Caller-owned replacement for a "visited" flag on every waypoint. Each
+	 * traversal gets a new stamp, and a waypoint counts as visited only if it
+	 * carries the current stamp, so starting a traversal costs nothing instead
+	 * of a pass resetting every flag. Since the marks aren't stored on the
+	 * waypoints, any number of traversals (each with its own marker) can walk
+	 * the same path at the same time.
+	 */
+
+	private int[] stamps = new int[0];
+	private int epoch = 0;
+
+	// Starts a new traversal over waypoint ids 0 to size - 1
+	public void begin(int size)
+	{
+		if (stamps.length < size)
+		{
+			stamps = new int[Math.max(size, stamps.length * 2)];
+			epoch = 0;
+		}
+		epoch++;
+		// After wrapping around, old stamps could look current again
+		if (epoch == 0)
+		{
+			Arrays.fill(stamps, 0);
+			epoch = 1;
+		}
+	}
+
+	// Marks id, returns false if it was already visited in this traversal
+	public boolean visit(int id)
+	{
+		if (stamps[id] == epoch)
+			return false;
+		stamps[id] = epoch;
+		return true;
+	}
+
+	public boolean isVisited(int id)
+	{
+		return stamps[id] == epoch;
+	}
+}
@@ -0,0 +1,124 @@
+
+package com.example.pathmaker;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+public class Waypoint
+{
+	private EdgeSet edges;
+	public int id;
+	public int x;
+	public int y;
+	public MapPath path;
+
+	// The fundamental unit of travel. A character would ideally walk between
+	// connected waypoints in the actual game.
+	// For description of design choices see MapPath.java or the Readme.
+	public Waypoint(int pX, int pY)
+	{
+		x = pX;
+		y = pY;
+		path = null;
+		edges = new EdgeSet();
+	}
+
+	public Waypoint(int pX, int pY, int ID, EdgeSet edgeSet)
+	{
+		x = pX;
+		y = pY;
+		id = ID;
+		edges = edgeSet;
+	}
+
+	// Repeated edges in edgeList are only kept once
+	public Waypoint(int pX, int pY, int ID, ArrayList<Edge> edgeList)
+	{
+		this(pX, pY, ID, new EdgeSet(edgeList.size()));
+		for (Edge e : edgeList)
+			edges.add(e.edgeToId);
+	}
+
+	public String serialize()
+	{
+		StringWriter out = new StringWriter();
+		try
+		{
+			MapWriter writer = new MapWriter(out);
+			writer.writeWaypoint(this);
+			writer.flush();
+		}
+		catch (IOException e)
+		{
+			// StringWriter doesn't throw
+		}
+		return out.toString();
+	}
+
+	// Returns null if wpString is malformed
+	public static Waypoint createFromString(String wpString)
+	{
+		try
+		{
+			return new MapParser(wpString).parseWaypoint();
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	// When a path gets integrated into another, the edge ids all change, but
+	// they are offset by a constant number corresponding to the number of
+	// Waypoints in the new Path at the time of integration.
+	public void addToEdgeIds(int amount)
+	{
+		edges.offsetAll(amount);
+	}
+
+	// Compaction of the path renumbered its waypoints, the waypoint with id
+	// i is now remap[i]
+	void remapEdgeIds(int[] remap)
+	{
+		edges.remapAll(remap);
+	}
+
+	// Connects this waypoint to wp, unless it already is
+	public void addConnection(Waypoint wp)
+	{
+		if (edges.add(wp.id) && path != null)
+			path.markChanged(id);
+	}
+
+	// Disconnects this waypoint from wpId, if they're connected
+	public void removeConnection(int wpId)
+	{
+		if (edges.remove(wpId) && path != null)
+			path.markChanged(id);
+	}
+
+	// Drops every connection (but not the other ends' connections to this
+	// waypoint)
+	void clearConnections()
+	{
+		if (edges.size() > 0 && path != null)
+			path.markChanged(id);
+		edges.clear();
+	}
+
+	public boolean hasConnection(int wpId)
+	{
+		return edges.contains(wpId);
+	}
+
+	public int getConnectionCount()
+	{
+		return edges.size();
+	}
+
+	public int getConnectionId(int index)
+	{
+		return edges.get(index);
+	}
+}
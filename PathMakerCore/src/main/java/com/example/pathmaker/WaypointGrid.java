@@ -0,0 +1,159 @@
+
+package com.example.pathmaker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class WaypointGrid
+{
+	private static final LatencyHistogram NEAREST_TIME = Metrics
+			.histogram("nearest");
+
+	private final float cellSize;
+	// Cells in use: the key of each and its waypoints
+	private long[] cellKeys = new long[16];
+	private final ArrayList<ArrayList<Waypoint>> buckets =
+			new ArrayList<ArrayList<Waypoint>>();
+	private int cellCount = 0;
+	// Slots hold position + 1 in cellKeys, 0 marks an empty slot
+	private int[] table = new int[32];
+
+	/*
+	 * Buckets waypoints into square cells so that a radius search only has to
+	 * look at the handful of cells the search circle overlaps instead of every
+	 * waypoint on the map. With the cell size equal to the search radius
+	 * that's at most 3x3 cells.
+	 * 
+	 * Cells are found through an open addressing table on the packed cell
+	 * coordinates, like EdgeSet's, so a lookup doesn't box a Long. A cell
+	 * that becomes empty keeps its place until clear(), which also keeps
+	 * the bucket lists for reuse.
+	 */
+
+	public WaypointGrid(float cell)
+	{
+		cellSize = cell;
+	}
+
+	public void add(Waypoint wp)
+	{
+		long key = key(cell(wp.x), cell(wp.y));
+		int slot = find(key);
+		if (table[slot] != 0)
+		{
+			buckets.get(table[slot] - 1).add(wp);
+			return;
+		}
+		if (cellCount == cellKeys.length)
+			cellKeys = Arrays.copyOf(cellKeys, cellCount * 2);
+		if (cellCount == buckets.size())
+			buckets.add(new ArrayList<Waypoint>());
+		cellKeys[cellCount] = key;
+		buckets.get(cellCount).add(wp);
+		cellCount++;
+		table[slot] = cellCount;
+		if (cellCount * 2 > table.length)
+			rehash();
+	}
+
+	// Returns false if wp wasn't in the grid
+	public boolean remove(Waypoint wp)
+	{
+		ArrayList<Waypoint> bucket = get(key(cell(wp.x), cell(wp.y)));
+		return bucket != null && bucket.remove(wp);
+	}
+
+	// Adds every waypoint of bundle that hasn't been deleted
+	public void addAll(MapBundle bundle)
+	{
+		for (MapPath p : bundle.paths)
+		{
+			for (int i = 0; i < p.size(); i++)
+			{
+				if (!p.isDeleted(i))
+					add(p.getWaypoint(i));
+			}
+		}
+	}
+
+	public void clear()
+	{
+		for (int i = 0; i < cellCount; i++)
+			buckets.get(i).clear();
+		cellCount = 0;
+		Arrays.fill(table, 0);
+	}
+
+	// Closest waypoint strictly within maxDist of (x, y), ignoring the two
+	// excluded points (either may be null). Returns null if there is none.
+	public Waypoint nearest(float x, float y, float maxDist, Waypoint excludeA,
+			Waypoint excludeB)
+	{
+		long start = Metrics.start();
+		float minDistSq = maxDist * maxDist;
+		Waypoint retPt = null;
+		int minCellX = cell(x - maxDist);
+		int maxCellX = cell(x + maxDist);
+		int minCellY = cell(y - maxDist);
+		int maxCellY = cell(y + maxDist);
+		for (int cx = minCellX; cx <= maxCellX; cx++)
+		{
+			for (int cy = minCellY; cy <= maxCellY; cy++)
+			{
+				ArrayList<Waypoint> bucket = get(key(cx, cy));
+				if (bucket == null)
+					continue;
+				for (int i = 0; i < bucket.size(); i++)
+				{
+					Waypoint candidate = bucket.get(i);
+					if (candidate == excludeA || candidate == excludeB)
+						continue;
+					float dx = candidate.x - x;
+					float dy = candidate.y - y;
+					float distSq = dx * dx + dy * dy;
+					if (distSq < minDistSq)
+					{
+						retPt = candidate;
+						minDistSq = distSq;
+					}
+				}
+			}
+		}
+		NEAREST_TIME.stop(start);
+		return retPt;
+	}
+
+	private int cell(float coord)
+	{
+		return (int) Math.floor(coord / cellSize);
+	}
+
+	private static long key(int cx, int cy)
+	{
+		return ((long) cx << 32) | (cy & 0xffffffffL);
+	}
+
+	// The waypoints in the cell, null if it was never used
+	private ArrayList<Waypoint> get(long key)
+	{
+		int position = table[find(key)];
+		return position == 0 ? null : buckets.get(position - 1);
+	}
+
+	private int find(long key)
+	{
+		int mask = table.length - 1;
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (table[slot] != 0 && cellKeys[table[slot] - 1] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void rehash()
+	{
+		table = new int[table.length * 2];
+		for (int i = 0; i < cellCount; i++)
+			table[find(cellKeys[i])] = i + 1;
+	}
+}
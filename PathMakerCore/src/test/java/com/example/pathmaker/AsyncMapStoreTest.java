@@ -0,0 +1,224 @@
+
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncMapStoreTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AsyncMapStore store;
+	private Recorder callback;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		store = new AsyncMapStore();
+		callback = new Recorder();
+		file = new File(folder.getRoot(), "m.map");
+	}
+
+	@After
+	public void tearDown()
+	{
+		store.shutdown();
+	}
+
+	@Test
+	public void failedSaveKeepsPendingRecords() throws Exception
+	{
+		MapBundle bundle = chain(3);
+		MapJournal journal = MapJournal.create(file);
+		store.save(bundle, journal, callback).get();
+
+		MapPath path = bundle.paths.get(0);
+		journal.recordWaypoint(0, 90, 0);
+		path.addWaypoint(new Waypoint(90, 0));
+		journal.recordConnect(0, 3, 0, 2);
+		bundle.connect(path.getWaypoint(3), path.getWaypoint(2));
+
+		// The temporary file can't be created, so the snapshot isn't written
+		assertTrue(new File(file.getPath() + ".tmp").mkdir());
+		store.save(bundle, journal, callback).get();
+		assertEquals(1, callback.failures.size());
+
+		store.close(journal);
+		assertEquals(bundle.serialize(), load().serialize());
+	}
+
+	@Test
+	public void failedRenumberingSaveKeepsIds() throws Exception
+	{
+		MapBundle bundle = chain(6);
+		MapJournal journal = MapJournal.create(file);
+		store.save(bundle, journal, callback).get();
+
+		MapPath path = bundle.paths.get(0);
+		journal.recordDelete(0, 1, 2);
+		path.deleteWaypoint(1);
+		store.commit(bundle, journal, callback).get();
+
+		assertTrue(new File(file.getPath() + ".tmp").mkdir());
+		store.save(bundle, journal, callback).get();
+		assertEquals(1, callback.failures.size());
+
+		// The journal still follows the old snapshot, and so do the ids
+		journal.recordConnect(0, 4, 0, 0);
+		bundle.connect(path.getWaypoint(4), path.getWaypoint(0));
+		store.commit(bundle, journal, callback).get();
+		assertEquals(6, path.size());
+
+		store.close(journal);
+		assertEquals(bundle.serialize(), load().serialize());
+	}
+
+	@Test
+	public void renumberingSaveAppliesIdsOnceWritten() throws Exception
+	{
+		MapBundle bundle = chain(6);
+		MapJournal journal = MapJournal.create(file);
+		store.save(bundle, journal, callback).get();
+
+		MapPath path = bundle.paths.get(0);
+		path.deleteWaypoint(1);
+		store.save(bundle, journal, callback).get();
+		assertEquals(6, path.size());
+
+		// Made with the old ids, so the commit saves the map again
+		journal.recordConnect(0, 4, 0, 0);
+		bundle.connect(path.getWaypoint(4), path.getWaypoint(0));
+		store.commit(bundle, journal, callback).get();
+		assertEquals(5, path.size());
+		assertEquals(0, callback.failures.size());
+
+		store.close(journal);
+		assertEquals(bundle.serialize(), load().serialize());
+	}
+
+	@Test
+	public void simplifiedMapSurvivesFailedSave() throws Exception
+	{
+		MapBundle bundle = chain(10);
+		MapJournal journal = MapJournal.create(file);
+		store.save(bundle, journal, callback).get();
+
+		MapPath path = bundle.paths.get(0);
+		assertEquals(8, new PathSimplifier(1f).simplify(bundle, journal));
+		assertTrue(new File(file.getPath() + ".tmp").mkdir());
+		store.save(bundle, journal, callback).get();
+		assertEquals(1, callback.failures.size());
+
+		// Still numbered like the old snapshot
+		journal.recordWaypoint(0, 270, 30);
+		path.addWaypoint(new Waypoint(270, 30));
+		journal.recordConnect(0, 10, 0, 9);
+		bundle.connect(path.getWaypoint(10), path.getWaypoint(9));
+		store.commit(bundle, journal, callback).get();
+
+		store.close(journal);
+		MapBundle loaded = load();
+		assertEquals(bundle.serialize(), loaded.serialize());
+		MapPath replayed = loaded.paths.get(0);
+		assertEquals(3, replayed.size() - replayed.getDeletedCount());
+	}
+
+	@Test
+	public void binaryMapStaysBinary() throws Exception
+	{
+		MapFiles.save(chain(6), file, true);
+		MapBundle bundle = load();
+		MapJournal journal = MapJournal.create(file);
+
+		MapPath path = bundle.paths.get(0);
+		path.deleteWaypoint(2);
+		path.addWaypoint(new Waypoint(0, 60));
+		bundle.connect(path.getWaypoint(6), path.getWaypoint(0));
+		store.save(bundle, journal, callback).get();
+		assertEquals(0, callback.failures.size());
+
+		assertTrue(MapFiles.isBinary(file));
+		store.close(journal);
+		assertEquals(bundle.serialize(), load().serialize());
+	}
+
+	@Test
+	public void interruptedMapIsNoFailure() throws Exception
+	{
+		MapFiles.save(chain(100000), file, false);
+		assertTrue(file.length() >= AsyncMapStore.PARALLEL_LOAD_SIZE);
+
+		// As if cancel(true) came just before the file is mapped
+		callback.interruptOnProgress = true;
+		store.load(file, callback).get();
+		assertEquals(0, callback.failures.size());
+		assertNull(callback.loaded);
+	}
+
+	// A path of n waypoints, 30 apart, connected one after the other
+	static MapBundle chain(int n)
+	{
+		MapPath path = new MapPath(new Waypoint(0, 0));
+		MapBundle bundle = new MapBundle();
+		bundle.paths.add(path);
+		for (int i = 1; i < n; i++)
+		{
+			path.addWaypoint(new Waypoint(30 * i, 0));
+			bundle.connect(path.getWaypoint(i), path.getWaypoint(i - 1));
+		}
+		return bundle;
+	}
+
+	private MapBundle load() throws Exception
+	{
+		store.load(file, callback).get();
+		assertNotNull(callback.loaded);
+		return callback.loaded;
+	}
+
+	private static class Recorder implements AsyncMapStore.Callback
+	{
+		final ArrayList<IOException> failures = new ArrayList<IOException>();
+		volatile MapBundle loaded;
+		volatile boolean interruptOnProgress = false;
+
+		public void onProgress(long done, long total)
+		{
+			if (interruptOnProgress)
+				Thread.currentThread().interrupt();
+		}
+
+		public void onSaved(File file)
+		{
+		}
+
+		public void onLoaded(File file, MapBundle bundle, MapJournal journal)
+		{
+			loaded = bundle;
+		}
+
+		public void onRepaired(File file,
+				ArrayList<PathValidator.Violation> violations)
+		{
+		}
+
+		public synchronized void onFailed(File file, IOException e)
+		{
+			failures.add(e);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BinaryMapCodecTest
+{
+	// Magic, version, one path of one waypoint
+	private static final int[] HEADER = { 'P', 'M', 'A', 'P',
+			BinaryMapCodec.VERSION, 1, 1 };
+
+	@Test
+	public void widestVarintIsRead() throws MapFormatException
+	{
+		// x is zigzag 0xffffffff, the most negative int
+		MapBundle bundle = BinaryMapCodec.read(map(0xff, 0xff, 0xff, 0xff,
+				0x0f, 0, 0));
+		assertEquals(Integer.MIN_VALUE, bundle.paths.get(0).getWaypoint(0).x);
+		assertEquals(0, bundle.paths.get(0).getWaypoint(0).y);
+	}
+
+	@Test
+	public void sixByteVarintIsRejected()
+	{
+		assertMalformed(map(0x80, 0x80, 0x80, 0x80, 0x80, 0x00, 0, 0));
+	}
+
+	@Test
+	public void varintPast32BitsIsRejected()
+	{
+		assertMalformed(map(0xff, 0xff, 0xff, 0xff, 0x1f, 0, 0));
+		assertMalformed(map(0x80, 0x80, 0x80, 0x80, 0x40, 0, 0));
+	}
+
+	// Reports the varint at x, right after the header
+	private static void assertMalformed(ByteBuffer in)
+	{
+		try
+		{
+			BinaryMapCodec.read(in);
+			fail();
+		}
+		catch (MapFormatException e)
+		{
+			assertEquals(HEADER.length, e.getOffset());
+		}
+	}
+
+	// The header followed by the waypoint's bytes
+	private static ByteBuffer map(int... waypoint)
+	{
+		byte[] bytes = new byte[HEADER.length + waypoint.length];
+		for (int i = 0; i < HEADER.length; i++)
+			bytes[i] = (byte) HEADER[i];
+		for (int i = 0; i < waypoint.length; i++)
+			bytes[HEADER.length + i] = (byte) waypoint[i];
+		return ByteBuffer.wrap(bytes);
+	}
+}
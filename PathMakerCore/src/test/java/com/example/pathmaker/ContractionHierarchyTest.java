@@ -0,0 +1,113 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContractionHierarchyTest
+{
+	// Magic, version and CRC
+	private static final int HEADER_SIZE = 13;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+	private ContractionHierarchy[] built;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		ArrayList<MapPath> paths = new ArrayList<MapPath>();
+		paths.add(TestPaths.random(4, 200, 50, 0));
+		paths.add(TestPaths.random(5, 50, 10, 0));
+		MapBundle bundle = new MapBundle(paths);
+		file = folder.newFile("m.map");
+		MapFiles.save(bundle, file, false);
+		built = new HierarchyBuilder().build(bundle.publish());
+		ContractionHierarchy.save(file, built);
+	}
+
+	@Test
+	public void roundTrip() throws IOException
+	{
+		ContractionHierarchy[] loaded = ContractionHierarchy.load(file);
+		assertEquals(built.length, loaded.length);
+		for (int i = 0; i < built.length; i++)
+		{
+			assertArrayEquals(built[i].offsets, loaded[i].offsets);
+			assertArrayEquals(built[i].targets, loaded[i].targets);
+			assertArrayEquals(built[i].weights, loaded[i].weights, 0f);
+			assertArrayEquals(built[i].middles, loaded[i].middles);
+		}
+	}
+
+	@Test
+	public void staleHierarchyIsIgnored() throws IOException
+	{
+		MapBundle other = new MapBundle();
+		other.paths.add(TestPaths.random(6, 20, 0, 0));
+		MapFiles.save(other, file, false);
+		assertNull(ContractionHierarchy.load(file));
+	}
+
+	@Test
+	public void missingHierarchy() throws IOException
+	{
+		assertNull(ContractionHierarchy.load(folder.newFile("n.map")));
+	}
+
+	@Test
+	public void hugeCountIsRejected() throws IOException
+	{
+		patch(HEADER_SIZE, Integer.MAX_VALUE);
+		assertCorrupt(HEADER_SIZE);
+	}
+
+	@Test
+	public void hugeSizeIsRejected() throws IOException
+	{
+		// The first hierarchy's waypoint count
+		patch(HEADER_SIZE + 4, 1 << 30);
+		assertCorrupt(HEADER_SIZE + 4);
+	}
+
+	private void patch(long position, int value) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(
+				ContractionHierarchy.getFile(file), "rw");
+		try
+		{
+			raf.seek(position);
+			raf.writeInt(value);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	private void assertCorrupt(long offset) throws IOException
+	{
+		try
+		{
+			ContractionHierarchy.load(file);
+			fail();
+		}
+		catch (MapFormatException e)
+		{
+			assertEquals(offset, e.getOffset());
+		}
+	}
+}
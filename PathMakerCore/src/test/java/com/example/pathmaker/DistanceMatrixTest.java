@@ -0,0 +1,99 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DistanceMatrixTest
+{
+	private final DistanceMatrix matrix = new DistanceMatrix(3);
+
+	@After
+	public void tearDown()
+	{
+		matrix.shutdown();
+	}
+
+	@Test
+	public void matchesRouteFinder() throws InterruptedException
+	{
+		// Tombstones split the path, so some pairs are unreachable
+		compare(TestPaths.random(7, 500, 100, 60).freeze(), 1);
+	}
+
+	@Test
+	public void poolIsReused() throws InterruptedException
+	{
+		assertEquals(3, matrix.getThreadCount());
+		for (int i = 0; i < 5; i++)
+			compare(TestPaths.random(10 + i, 300, 50, 20).freeze(), i);
+	}
+
+	@Test
+	public void singleThread() throws InterruptedException
+	{
+		DistanceMatrix single = new DistanceMatrix(1);
+		try
+		{
+			FrozenPath path = TestPaths.random(8, 200, 40, 10).freeze();
+			int[] ids = ids(path.size, 20, new Random(2));
+			float[][] a = single.compute(path, ids, ids);
+			float[][] b = matrix.compute(path, ids, ids);
+			for (int i = 0; i < ids.length; i++)
+			{
+				for (int j = 0; j < ids.length; j++)
+					assertEquals(a[i][j], b[i][j], 0f);
+			}
+		}
+		finally
+		{
+			single.shutdown();
+		}
+	}
+
+	@Test
+	public void unreachableIsInfinite() throws InterruptedException
+	{
+		MapPath path = TestPaths.random(9, 10, 0, 0);
+		// A tombstone has no connections left
+		path.deleteWaypoint(5);
+		float[][] m = matrix.compute(path.freeze(), new int[] { 0, 5 },
+				new int[] { 5, 0 });
+		assertEquals(Float.POSITIVE_INFINITY, m[0][0], 0f);
+		assertEquals(0f, m[0][1], 0f);
+		assertEquals(0f, m[1][0], 0f);
+		assertEquals(Float.POSITIVE_INFINITY, m[1][1], 0f);
+	}
+
+	private void compare(FrozenPath path, long seed)
+			throws InterruptedException
+	{
+		Random random = new Random(seed);
+		int[] sources = ids(path.size, 25, random);
+		int[] targets = ids(path.size, 30, random);
+		float[][] m = matrix.compute(path, sources, targets);
+		RouteFinder finder = new RouteFinder();
+		for (int i = 0; i < sources.length; i++)
+		{
+			for (int j = 0; j < targets.length; j++)
+			{
+				Route route = finder.findRoute(path, sources[i], targets[j]);
+				float expected = route == null ? Float.POSITIVE_INFINITY
+						: route.length;
+				assertEquals(expected, m[i][j],
+						1e-4f * Math.max(1f, expected));
+			}
+		}
+	}
+
+	private static int[] ids(int size, int count, Random random)
+	{
+		int[] ids = new int[count];
+		for (int i = 0; i < count; i++)
+			ids[i] = random.nextInt(size);
+		return ids;
+	}
+}
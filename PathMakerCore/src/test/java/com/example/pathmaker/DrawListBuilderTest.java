@@ -0,0 +1,119 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class DrawListBuilderTest
+{
+	private final DrawListBuilder builder = new DrawListBuilder();
+	private final DrawList out = new DrawList();
+
+	@Test
+	public void chain()
+	{
+		builder.build(chain(4).freeze(), out);
+		assertEquals(4, out.getPointCount());
+		assertArrayEquals(new float[] { 0, 0, 10, 0, 20, 0, 30, 0 },
+				points(), 0f);
+		assertArrayEquals(new float[] { 0, 0, 10, 0, 10, 0, 20, 0, 20, 0,
+				30, 0 }, segments(), 0f);
+	}
+
+	@Test
+	public void cycleDrawsEverySegmentOnce()
+	{
+		MapPath path = chain(4);
+		connect(path, 3, 0);
+		builder.build(path.freeze(), out);
+		assertEquals(4, out.getPointCount());
+		assertEquals(4, out.getSegmentCount());
+	}
+
+	@Test
+	public void skipsDuplicateAndSelfEdges()
+	{
+		// 0 lists 1 twice and itself, 1 lists 0 twice
+		FrozenPath path = new FrozenPath(new int[] { 0, 10 },
+				new int[] { 0, 0 }, new int[] { 0, 3, 5 },
+				new int[] { 1, 0, 1, 0, 0 }, new float[5], null, 0);
+		builder.build(path, out);
+		assertEquals(2, out.getPointCount());
+		assertArrayEquals(new float[] { 0, 0, 10, 0 }, segments(), 0f);
+	}
+
+	@Test
+	public void deletedRootIsSkipped()
+	{
+		MapPath path = chain(4);
+		path.deleteWaypoint(0);
+		builder.build(path.freeze(), out);
+		assertArrayEquals(new float[] { 10, 0, 20, 0, 30, 0 }, points(), 0f);
+		assertEquals(2, out.getSegmentCount());
+	}
+
+	@Test
+	public void drawsEveryPartOfASplitPath()
+	{
+		MapPath path = chain(5);
+		path.deleteWaypoint(2);
+		builder.build(path.freeze(), out);
+		assertEquals(4, out.getPointCount());
+		assertEquals(2, out.getSegmentCount());
+	}
+
+	@Test
+	public void deepChainDoesNotRecurse()
+	{
+		// Far deeper than a recursive walk would survive
+		int n = 1 << 20;
+		int[] xs = new int[n];
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[2 * (n - 1)];
+		int e = 0;
+		for (int i = 0; i < n; i++)
+		{
+			xs[i] = i;
+			if (i > 0)
+				targets[e++] = i - 1;
+			if (i < n - 1)
+				targets[e++] = i + 1;
+			offsets[i + 1] = e;
+		}
+		builder.build(new FrozenPath(xs, new int[n], offsets, targets,
+				new float[e], null, 0), out);
+		assertEquals(n, out.getPointCount());
+		assertEquals(n - 1, out.getSegmentCount());
+	}
+
+	// A path of n waypoints, 10 apart, connected one after the other
+	private static MapPath chain(int n)
+	{
+		MapPath path = new MapPath(new Waypoint(0, 0));
+		for (int i = 1; i < n; i++)
+		{
+			path.addWaypoint(new Waypoint(10 * i, 0));
+			connect(path, i - 1, i);
+		}
+		return path;
+	}
+
+	private static void connect(MapPath path, int a, int b)
+	{
+		path.getWaypoint(a).addConnection(path.getWaypoint(b));
+		path.getWaypoint(b).addConnection(path.getWaypoint(a));
+	}
+
+	private float[] points()
+	{
+		return Arrays.copyOf(out.points, out.pointFloats);
+	}
+
+	private float[] segments()
+	{
+		return Arrays.copyOf(out.segments, out.segmentFloats);
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EdgeSetTest
+{
+	// Small enough for many repeats, big enough for sets past INLINE_LIMIT
+	private static final int ID_RANGE = 40;
+
+	@Test
+	public void matchesListOfIds()
+	{
+		Random random = new Random(12);
+		for (int round = 0; round < 200; round++)
+		{
+			EdgeSet set = new EdgeSet(random.nextInt(4));
+			ArrayList<Integer> expected = new ArrayList<Integer>();
+			for (int step = 0; step < 300; step++)
+			{
+				int id = random.nextInt(ID_RANGE);
+				int op = random.nextInt(100);
+				if (op < 55)
+				{
+					assertEquals(!expected.contains(id), set.add(id));
+					if (!expected.contains(id))
+						expected.add(id);
+				}
+				else if (op < 90)
+					assertEquals(expected.remove((Integer) id), set.remove(id));
+				else if (op < 95)
+				{
+					int amount = random.nextInt(ID_RANGE);
+					set.offsetAll(amount);
+					for (int i = 0; i < expected.size(); i++)
+						expected.set(i, expected.get(i) + amount);
+					assertSame(expected, set, id + amount);
+					// Back into range, so later adds hit the same ids
+					set.remapAll(shift(-amount));
+					for (int i = 0; i < expected.size(); i++)
+						expected.set(i, expected.get(i) - amount);
+				}
+				else if (op < 99)
+				{
+					int[] remap = permutation(random);
+					set.remapAll(remap);
+					for (int i = 0; i < expected.size(); i++)
+						expected.set(i, remap[expected.get(i)]);
+				}
+				else
+				{
+					set.clear();
+					expected.clear();
+				}
+				assertSame(expected, set, random.nextInt(ID_RANGE));
+			}
+		}
+	}
+
+	@Test
+	public void hashedSetKeepsOrderThroughRemoves()
+	{
+		EdgeSet set = new EdgeSet();
+		ArrayList<Integer> expected = new ArrayList<Integer>();
+		for (int id = 0; id < 30; id++)
+		{
+			set.add(id * 7);
+			expected.add(id * 7);
+		}
+		// Every other one, front to back
+		for (int id = 0; id < 30; id += 2)
+		{
+			set.remove(id * 7);
+			expected.remove((Integer) (id * 7));
+			assertSame(expected, set, id * 7);
+		}
+		for (int id = 0; id < 30; id++)
+			assertEquals(id % 2 == 1, set.contains(id * 7));
+	}
+
+	private static void assertSame(ArrayList<Integer> expected, EdgeSet set,
+			int probe)
+	{
+		assertEquals(expected.size(), set.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals((int) expected.get(i), set.get(i));
+			assertTrue(set.contains(expected.get(i)));
+		}
+		assertEquals(expected.contains(probe), set.contains(probe));
+	}
+
+	// Maps each id below 2 * ID_RANGE to id + amount
+	private static int[] shift(int amount)
+	{
+		int[] remap = new int[2 * ID_RANGE];
+		for (int i = 0; i < remap.length; i++)
+			remap[i] = i + amount;
+		return remap;
+	}
+
+	private static int[] permutation(Random random)
+	{
+		int[] remap = new int[ID_RANGE];
+		for (int i = 0; i < ID_RANGE; i++)
+			remap[i] = i;
+		for (int i = ID_RANGE - 1; i > 0; i--)
+		{
+			int j = random.nextInt(i + 1);
+			int t = remap[i];
+			remap[i] = remap[j];
+			remap[j] = t;
+		}
+		return remap;
+	}
+}
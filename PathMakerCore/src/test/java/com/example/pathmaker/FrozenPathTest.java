@@ -0,0 +1,95 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FrozenPathTest
+{
+	@Test
+	public void incrementalFreezeMatchesFullBuild()
+	{
+		Random random = new Random(6);
+		MapBundle bundle = new MapBundle();
+		for (int i = 0; i < 4; i++)
+			bundle.paths.add(TestPaths.random(i, 30, 5, 0));
+		for (int step = 0; step < 2000; step++)
+		{
+			int op = random.nextInt(100);
+			MapPath path = bundle.paths.get(random.nextInt(bundle.paths
+					.size()));
+			if (op < 40)
+			{
+				// A stroke continuing from an existing waypoint
+				Waypoint from = live(path, random);
+				Waypoint wp = new Waypoint(random.nextInt(1000),
+						random.nextInt(1000));
+				path.addWaypoint(wp);
+				if (from != null)
+					bundle.connect(from, wp);
+			}
+			else if (op < 60)
+			{
+				Waypoint a = live(path, random);
+				Waypoint b = live(path, random);
+				if (a != null && b != null && a != b)
+					bundle.connect(a, b);
+			}
+			else if (op < 75)
+			{
+				int from = random.nextInt(path.size());
+				path.deleteRange(from, Math.min(path.size(), from + 1
+						+ random.nextInt(3)));
+			}
+			else if (op < 85 && bundle.paths.size() > 1)
+			{
+				// Joins two paths, the smaller one is integrated
+				MapPath other = bundle.paths.get(random.nextInt(bundle.paths
+						.size()));
+				Waypoint a = live(path, random);
+				Waypoint b = live(other, random);
+				if (path != other && a != null && b != null)
+					bundle.connect(a, b);
+			}
+			else if (op < 90)
+				bundle.compact();
+			else if (op < 95)
+				bundle.paths.add(new MapPath(new Waypoint(random.nextInt(1000),
+						random.nextInt(1000))));
+			// Otherwise just freeze again without changes
+
+			if (bundle.paths.isEmpty())
+				bundle.paths.add(TestPaths.random(step, 10, 2, 0));
+			for (MapPath p : bundle.paths)
+				assertSame(FrozenPath.build(p, null, 0), p.freeze());
+		}
+	}
+
+	// A random waypoint of path that isn't deleted, if one is found quickly
+	private static Waypoint live(MapPath path, Random random)
+	{
+		for (int tries = 0; tries < 10 && path.size() > 0; tries++)
+		{
+			int id = random.nextInt(path.size());
+			if (!path.isDeleted(id))
+				return path.getWaypoint(id);
+		}
+		return null;
+	}
+
+	private static void assertSame(FrozenPath expected, FrozenPath actual)
+	{
+		assertEquals(expected.size, actual.size);
+		assertArrayEquals(expected.xs, actual.xs);
+		assertArrayEquals(expected.ys, actual.ys);
+		assertArrayEquals(expected.offsets, actual.offsets);
+		assertArrayEquals(expected.targets, actual.targets);
+		assertArrayEquals(expected.lengths, actual.lengths, 0f);
+		assertEquals(expected.deletedCount, actual.deletedCount);
+		for (int i = 0; i < expected.size; i++)
+			assertEquals(expected.isDeleted(i), actual.isDeleted(i));
+	}
+}
@@ -0,0 +1,61 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HierarchyQueryTest
+{
+	@Test
+	public void matchesRouteFinder()
+	{
+		compare(TestPaths.random(1, 400, 200, 0));
+	}
+
+	@Test
+	public void matchesRouteFinderWithTombstones()
+	{
+		compare(TestPaths.random(2, 400, 100, 40));
+	}
+
+	@Test
+	public void sparsePathMatchesRouteFinder()
+	{
+		// Long chains, which contract without shortcuts
+		compare(TestPaths.random(3, 600, 10, 0));
+	}
+
+	private static void compare(MapPath path)
+	{
+		FrozenPath f = path.freeze();
+		ContractionHierarchy ch = new HierarchyBuilder().build(f);
+		assertEquals(f.size, ch.size);
+		HierarchyQuery query = new HierarchyQuery();
+		RouteFinder finder = new RouteFinder();
+		Random random = new Random(f.size);
+		for (int i = 0; i < 300; i++)
+		{
+			int from = random.nextInt(f.size);
+			int to = random.nextInt(f.size);
+			Route expected = finder.findRoute(f, from, to);
+			Route route = query.findRoute(ch, from, to);
+			if (expected == null)
+			{
+				assertNull(route);
+				continue;
+			}
+			assertNotNull(route);
+			float tolerance = 1e-4f * Math.max(1f, expected.length);
+			assertEquals(expected.length, route.length, tolerance);
+			int[] ids = route.waypointIds;
+			assertEquals(from, ids[0]);
+			assertEquals(to, ids[ids.length - 1]);
+			// Shortcuts are unpacked into real connections
+			assertEquals(route.length, TestPaths.length(f, ids), tolerance);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class MapBundleTest
+{
+	@Test
+	public void smallerPathIsIntegrated()
+	{
+		MapBundle bundle = new MapBundle();
+		MapPath large = line(bundle, 0, 5);
+		MapPath small = line(bundle, 100, 3);
+		small.deleteWaypoint(1);
+		Waypoint a = small.getWaypoint(2);
+		Waypoint b = large.getWaypoint(4);
+
+		bundle.connect(a, b);
+		assertEquals(1, bundle.paths.size());
+		assertSame(large, bundle.paths.get(0));
+		assertEquals(0, small.size());
+		assertEquals(8, large.size());
+
+		// The small path's ids follow the large one's, edges and
+		// tombstones included
+		assertSame(large, a.path);
+		assertEquals(7, a.id);
+		assertEquals(4, b.id);
+		assertTrue(large.isDeleted(6));
+		assertEquals(1, large.getDeletedCount());
+		assertFalse(large.getWaypoint(5).hasConnection(6));
+		assertTrue(a.hasConnection(4));
+		assertTrue(b.hasConnection(7));
+		assertTrue(b.hasConnection(3));
+		assertEquals(100, large.getWaypoint(5).x);
+	}
+
+	@Test
+	public void mergedPathKeepsItsPlace()
+	{
+		MapBundle bundle = new MapBundle();
+		line(bundle, 0, 2);
+		MapPath existing = line(bundle, 100, 3);
+		MapPath stroke = line(bundle, 200, 6);
+
+		// The stroke is bigger, so the existing path is integrated into
+		// it, but the result stays where the existing path was
+		Waypoint joined = existing.getWaypoint(0);
+		bundle.connect(stroke.getWaypoint(5), joined);
+		assertEquals(2, bundle.paths.size());
+		assertSame(stroke, bundle.paths.get(1));
+		assertEquals(9, stroke.size());
+		assertEquals(6, joined.id);
+		assertTrue(stroke.getWaypoint(5).hasConnection(6));
+		assertTrue(stroke.getWaypoint(7).hasConnection(6));
+	}
+
+	@Test
+	public void connectWithinPath()
+	{
+		MapBundle bundle = new MapBundle();
+		MapPath path = line(bundle, 0, 4);
+		bundle.connect(path.getWaypoint(3), path.getWaypoint(0));
+		assertEquals(1, bundle.paths.size());
+		assertEquals(4, path.size());
+		assertTrue(path.getWaypoint(0).hasConnection(3));
+	}
+
+	@Test
+	public void badRangeDeletesNothing()
+	{
+		MapBundle bundle = new MapBundle();
+		MapPath path = line(bundle, 0, 4);
+		int[][] ranges = { { 2, 5 }, { -1, 2 }, { 3, 1 } };
+		for (int[] range : ranges)
+		{
+			try
+			{
+				path.deleteRange(range[0], range[1]);
+				fail();
+			}
+			catch (IndexOutOfBoundsException e)
+			{
+				// Expected
+			}
+		}
+		assertEquals(0, path.getDeletedCount());
+		assertTrue(path.getWaypoint(2).hasConnection(3));
+		assertTrue(path.getWaypoint(3).hasConnection(2));
+
+		// An empty range is fine
+		path.deleteRange(4, 4);
+		assertEquals(0, path.getDeletedCount());
+	}
+
+	// A new path of n waypoints in a row at height y
+	private static MapPath line(MapBundle bundle, int y, int n)
+	{
+		MapPath path = new MapPath(new Waypoint(y, y));
+		bundle.paths.add(path);
+		for (int i = 1; i < n; i++)
+		{
+			path.addWaypoint(new Waypoint(y + 10 * i, y));
+			bundle.connect(path.getWaypoint(i - 1), path.getWaypoint(i));
+		}
+		return path;
+	}
+}
@@ -0,0 +1,82 @@
+
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MapFilesTest
+{
+	private static final String MAP = "$<{0(0,0)[1]}{1(30,0)[0][2]}"
+			+ "{2(60,-5)[1]}><{0(500,500)}>$";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void textRoundTrip() throws IOException
+	{
+		File file = folder.newFile("text.map");
+		MapFiles.save(MapBundle.createFromString(MAP), file, false);
+		assertFalse(MapFiles.isBinary(file));
+		assertEquals(MAP, MapFiles.load(file).serialize());
+	}
+
+	@Test
+	public void binaryRoundTrip() throws IOException
+	{
+		File file = folder.newFile("binary.map");
+		MapFiles.save(MapBundle.createFromString(MAP), file, true);
+		assertTrue(MapFiles.isBinary(file));
+		assertEquals(MAP, MapFiles.load(file).serialize());
+	}
+
+	@Test
+	public void deletedWaypointsAreNotSaved() throws IOException
+	{
+		// Same as MAP but with a tombstone between 0 and 1, and a second path
+		// that was deleted completely
+		MapBundle bundle = MapBundle.createFromString("$<{0(0,0)[2]}"
+				+ "{1(15,0)}{2(30,0)[0][3]}{3(60,-5)[2]}><{0(9,9)}>"
+				+ "<{0(500,500)}>$");
+		bundle.paths.get(0).deleteWaypoint(1);
+		bundle.paths.get(1).deleteWaypoint(0);
+		assertEquals(MAP, bundle.serialize());
+
+		File text = folder.newFile("text.map");
+		File binary = folder.newFile("binary.map");
+		MapFiles.save(bundle, text, false);
+		MapFiles.save(bundle, binary, true);
+		assertEquals(MAP, MapFiles.load(text).serialize());
+		assertEquals(MAP, MapFiles.load(binary).serialize());
+
+		StringWriter frozen = new StringWriter();
+		MapWriter writer = new MapWriter(frozen);
+		writer.writeBundle(bundle.freeze());
+		writer.flush();
+		assertEquals(MAP, frozen.toString());
+
+		// Compacting gives the live bundle the ids that were saved
+		bundle.compact();
+		assertEquals(MAP, bundle.serialize());
+	}
+
+	@Test
+	public void convertKeepsContent() throws IOException
+	{
+		File text = folder.newFile("source.map");
+		File binary = folder.newFile("target.map");
+		MapFiles.save(MapBundle.createFromString(MAP), text, false);
+		MapFiles.convert(text, binary, true);
+		assertTrue(MapFiles.isBinary(binary));
+		assertEquals(MAP, MapFiles.load(binary).serialize());
+	}
+}
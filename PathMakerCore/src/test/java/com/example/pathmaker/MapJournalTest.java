@@ -0,0 +1,154 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MapJournalTest
+{
+	// Magic, version and snapshot CRC
+	private static final int HEADER_SIZE = 13;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+	private File journalFile;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		file = new File(folder.getRoot(), "m.map");
+		journalFile = MapJournal.getJournalFile(file);
+		MapFiles.save(AsyncMapStoreTest.chain(4), file, false);
+	}
+
+	@Test
+	public void replaysRecords() throws IOException
+	{
+		MapBundle bundle = MapFiles.load(file);
+		MapJournal journal = open(bundle);
+		edit(bundle, journal);
+		journal.append(journal.takePending(), journal.getGeneration());
+		journal.close();
+
+		MapBundle replayed = MapFiles.load(file);
+		open(replayed).close();
+		assertEquals(bundle.serialize(), replayed.serialize());
+	}
+
+	@Test
+	public void truncatedRecordIsCutOff() throws IOException
+	{
+		MapBundle bundle = MapFiles.load(file);
+		MapJournal journal = open(bundle);
+		edit(bundle, journal);
+		journal.append(journal.takePending(), journal.getGeneration());
+		long length = journalFile.length();
+		String complete = bundle.serialize();
+		journal.recordWaypoint(0, 300, 300);
+		journal.append(journal.takePending(), journal.getGeneration());
+		journal.close();
+		// A crash halfway through writing the last record
+		setLength(journalFile, journalFile.length() - 5);
+
+		MapBundle replayed = MapFiles.load(file);
+		MapJournal reopened = open(replayed);
+		assertEquals(complete, replayed.serialize());
+		assertEquals(length, journalFile.length());
+
+		// New records go right after the last complete one
+		reopened.recordNewPath(7, 7);
+		reopened.append(reopened.takePending(), reopened.getGeneration());
+		reopened.close();
+		MapBundle again = MapFiles.load(file);
+		open(again).close();
+		assertEquals(replayed.paths.size() + 1, again.paths.size());
+	}
+
+	@Test
+	public void journalOfOtherSnapshotIsIgnored() throws IOException
+	{
+		MapBundle bundle = MapFiles.load(file);
+		MapJournal journal = open(bundle);
+		edit(bundle, journal);
+		journal.append(journal.takePending(), journal.getGeneration());
+		journal.close();
+
+		// As if a crash came after the new snapshot, before the reset
+		MapFiles.save(AsyncMapStoreTest.chain(5), file, false);
+		MapBundle loaded = MapFiles.load(file);
+		String snapshot = loaded.serialize();
+		open(loaded).close();
+		assertEquals(snapshot, loaded.serialize());
+		assertEquals(HEADER_SIZE, journalFile.length());
+	}
+
+	@Test
+	public void recordsOfOldGenerationAreDropped() throws IOException
+	{
+		MapBundle bundle = MapFiles.load(file);
+		MapJournal journal = open(bundle);
+		int oldGeneration = journal.getGeneration();
+		journal.beginRenumbering();
+		// Made with ids the renumbered snapshot no longer has
+		journal.recordWaypoint(0, 300, 300);
+		byte[] stale = journal.takePending();
+
+		journal.reset(MapJournal.checksum(file), file.length(),
+				oldGeneration + 1);
+		journal.endRenumbering(true);
+		journal.append(stale, oldGeneration);
+		assertEquals(HEADER_SIZE, journalFile.length());
+
+		// So the bundle has to be saved again, with the new ids
+		assertTrue(journal.finishRenumbering());
+		assertEquals(oldGeneration + 1, journal.getGeneration());
+		journal.recordNewPath(7, 7);
+		journal.append(journal.takePending(), journal.getGeneration());
+		journal.close();
+		assertFalse(journalFile.length() == HEADER_SIZE);
+	}
+
+	private MapJournal open(MapBundle bundle) throws IOException
+	{
+		return MapJournal.open(file, bundle, MapJournal.checksum(file),
+				file.length());
+	}
+
+	// One record of each kind, made on bundle as well
+	private static void edit(MapBundle bundle, MapJournal journal)
+	{
+		MapPath path = bundle.paths.get(0);
+		journal.recordWaypoint(0, 0, 60);
+		path.addWaypoint(new Waypoint(0, 60));
+		journal.recordConnect(0, 4, 0, 0);
+		bundle.connect(path.getWaypoint(4), path.getWaypoint(0));
+		journal.recordNewPath(500, 500);
+		bundle.paths.add(new MapPath(new Waypoint(500, 500)));
+		journal.recordDelete(0, 2, 3);
+		path.deleteRange(2, 3);
+	}
+
+	private static void setLength(File file, long length) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.setLength(length);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+}
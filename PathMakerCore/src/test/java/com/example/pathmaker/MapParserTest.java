@@ -0,0 +1,109 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class MapParserTest
+{
+	@Test
+	public void readsExtremeNumbers() throws IOException
+	{
+		String text = "$<{0(-2147483648,2147483647)[+1]}{1(0,-0)[0]}>$";
+		MapBundle bundle = new MapParser(text).parseBundle();
+		Waypoint wp = bundle.paths.get(0).getWaypoint(0);
+		assertEquals(Integer.MIN_VALUE, wp.x);
+		assertEquals(Integer.MAX_VALUE, wp.y);
+		assertEquals(1, wp.getConnectionId(0));
+	}
+
+	@Test
+	public void reportsWhereInputIsMalformed()
+	{
+		assertError("", 0, "expected '$' but reached end of input");
+		assertError("$<{0(0,0)}>", 11, "reached end of input");
+		assertError("$<{x(0,0)}>$", 3, "expected a number");
+		assertError("$<{0(0;0)}>$", 6, "expected ',' but found ';'");
+		assertError("$<{0(0,0)[1}>$", 11, "expected ']' but found '}'");
+		// The offset of a bad number is where it starts, sign included
+		assertError("$<{0(-,0)}>$", 5, "expected a number");
+		assertError("$<{0(0,-2147483649)}>$", 7, "number out of range");
+		assertError("$<{0(0,0)}{1(0,0)>$", 17, "expected '}' but found '>'");
+	}
+
+	@Test
+	public void readerReportsSameOffsets()
+	{
+		// Long enough for the error to come well after the first buffer
+		StringBuilder text = new StringBuilder("$");
+		while (text.length() < 20000)
+			text.append("<{0(10,20)[1]}{1(30,40)[0]}>");
+		int bad = text.length() + 6;
+		text.append("<{0(10;20)}>$");
+		assertError(text.toString(), bad, "expected ',' but found ';'");
+	}
+
+	@Test
+	public void rangeOffsetsCountFromStartOfInput()
+	{
+		String text = "$<{0(0,0)}><{0(0,0}>$";
+		try
+		{
+			new MapParser(text, 11, 20).parsePath();
+			fail();
+		}
+		catch (MapFormatException e)
+		{
+			assertEquals(18, e.getOffset());
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);
+		}
+		// The end of the range counts as the end of input
+		try
+		{
+			new MapParser(text, 0, 10).parsePath();
+			fail();
+		}
+		catch (MapFormatException e)
+		{
+			assertEquals(0, e.getOffset());
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+	// Both the in place and the Reader parser fail at offset
+	private static void assertError(String text, long offset, String message)
+	{
+		assertError(new MapParser(text), offset, message);
+		assertError(new MapParser(new StringReader(text)), offset, message);
+	}
+
+	private static void assertError(MapParser parser, long offset,
+			String message)
+	{
+		try
+		{
+			parser.parseBundle();
+			fail();
+		}
+		catch (MapFormatException e)
+		{
+			assertEquals(offset, e.getOffset());
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+}
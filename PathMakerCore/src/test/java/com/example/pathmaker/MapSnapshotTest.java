@@ -0,0 +1,66 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class MapSnapshotTest
+{
+	@Test
+	public void onlyEditedPathIsCopied()
+	{
+		MapBundle bundle = bundle();
+		MapSnapshot before = bundle.publish();
+		MapPath edited = bundle.paths.get(1);
+		edited.addWaypoint(new Waypoint(5, 5));
+		bundle.connect(edited.getWaypoint(0), edited.getWaypoint(20));
+		MapSnapshot after = bundle.publish();
+
+		assertEquals(before.version + 1, after.version);
+		assertSame(before.getPath(0), after.getPath(0));
+		assertSame(before.getPath(2), after.getPath(2));
+		assertNotSame(before.getPath(1), after.getPath(1));
+		// The old snapshot still shows the path as it was
+		assertEquals(20, before.getPath(1).size);
+		assertEquals(21, after.getPath(1).size);
+		assertEquals(before.getEdgeCount() + 1, after.getEdgeCount());
+		assertSame(after, bundle.snapshot());
+	}
+
+	@Test
+	public void unchangedBundleKeepsSnapshot()
+	{
+		MapBundle bundle = bundle();
+		MapSnapshot first = bundle.publish();
+		assertSame(first, bundle.publish());
+		assertEquals(60, first.getWaypointCount());
+	}
+
+	@Test
+	public void removedPathLeavesOthersShared()
+	{
+		MapBundle bundle = bundle();
+		MapSnapshot before = bundle.publish();
+		bundle.removePath(bundle.paths.get(2));
+		MapSnapshot after = bundle.publish();
+		assertEquals(2, after.getPathCount());
+		assertSame(before.getPath(0), after.getPath(0));
+		assertSame(before.getPath(1), after.getPath(1));
+
+		bundle.removePath(bundle.paths.get(0));
+		after = bundle.publish();
+		assertEquals(1, after.getPathCount());
+		assertSame(before.getPath(1), after.getPath(0));
+	}
+
+	// Three paths of 20 waypoints
+	private static MapBundle bundle()
+	{
+		MapBundle bundle = new MapBundle();
+		for (int i = 0; i < 3; i++)
+			bundle.paths.add(TestPaths.random(i, 20, 0, 0));
+		return bundle;
+	}
+}
@@ -0,0 +1,110 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MapWriterTest
+{
+	// Numbers whose digits are easy to get wrong
+	private static final int[] EDGE_VALUES = { 0, -1, 9, 10, -10, 99, 100,
+			Integer.MIN_VALUE, Integer.MAX_VALUE };
+
+	@Test
+	public void matchesOldSerialize() throws IOException
+	{
+		// Several times the writer's buffer
+		MapBundle bundle = bundle(1, 0);
+		String expected = oldSerialize(bundle);
+		assertTrue(expected.length() > 4 * 8192);
+
+		assertEquals(expected, bundle.serialize());
+		assertArrayEquals(expected.getBytes("US-ASCII"), write(bundle));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		MapWriter writer = new MapWriter(bytes);
+		writer.writeBundle(bundle.freeze());
+		writer.flush();
+		assertArrayEquals(expected.getBytes("US-ASCII"), bytes.toByteArray());
+	}
+
+	@Test
+	public void writesTombstonedPathsCompacted() throws IOException
+	{
+		MapBundle bundle = bundle(2, 30);
+		MapBundle compacted = bundle(2, 30);
+		compacted.compact();
+		String expected = oldSerialize(compacted);
+		assertEquals(expected, bundle.serialize());
+		assertArrayEquals(expected.getBytes("US-ASCII"), write(bundle));
+	}
+
+	private static byte[] write(MapBundle bundle) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		MapWriter writer = new MapWriter(bytes);
+		writer.writeBundle(bundle);
+		writer.flush();
+		return bytes.toByteArray();
+	}
+
+	// Paths with awkward coordinates, one of them deleted entirely when
+	// deleted > 0
+	private static MapBundle bundle(long seed, int deleted)
+	{
+		Random random = new Random(seed);
+		MapBundle bundle = new MapBundle();
+		for (int p = 0; p < 20; p++)
+		{
+			MapPath path = TestPaths.random(random.nextLong(), 100, 20,
+					deleted);
+			for (int i = 0; i < path.size(); i++)
+			{
+				Waypoint wp = path.getWaypoint(i);
+				if (random.nextInt(3) == 0)
+					wp.x = EDGE_VALUES[random.nextInt(EDGE_VALUES.length)];
+				if (random.nextInt(3) == 0)
+					wp.y = random.nextInt();
+			}
+			bundle.paths.add(path);
+		}
+		if (deleted > 0)
+		{
+			MapPath gone = bundle.paths.get(5);
+			gone.deleteRange(0, gone.size());
+		}
+		return bundle;
+	}
+
+	// MapBundle.serialize() as it was before MapWriter, which had no
+	// deleted paths to leave out
+	private static String oldSerialize(MapBundle bundle)
+	{
+		String me = "$";
+		for (MapPath p : bundle.paths)
+		{
+			if (p.isAllDeleted())
+				continue;
+			StringBuilder path = new StringBuilder("<");
+			for (int i = 0; i < p.size(); i++)
+			{
+				Waypoint wp = p.getWaypoint(i);
+				path.append("{" + String.valueOf(wp.id) + "("
+						+ String.valueOf(wp.x) + "," + String.valueOf(wp.y)
+						+ ")");
+				for (int j = 0; j < wp.getConnectionCount(); j++)
+					path.append("[" + String.valueOf(wp.getConnectionId(j))
+							+ "]");
+				path.append("}");
+			}
+			me += path.append(">");
+		}
+		return me + "$";
+	}
+}
@@ -0,0 +1,126 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest
+{
+	// The registry is shared with the rest of the process, so the names here
+	// are only used by this test
+	private boolean wasEnabled;
+
+	@Before
+	public void setUp()
+	{
+		wasEnabled = Metrics.isEnabled();
+		Metrics.setEnabled(true);
+		Metrics.reset();
+	}
+
+	@After
+	public void tearDown()
+	{
+		Metrics.gauge("test.gauge", null);
+		Metrics.reset();
+		Metrics.setEnabled(wasEnabled);
+	}
+
+	@Test
+	public void counterOnlyCountsWhileEnabled()
+	{
+		Counter counter = Metrics.counter("test.counter");
+		assertSame(counter, Metrics.counter("test.counter"));
+		counter.increment();
+		counter.add(4);
+		Metrics.setEnabled(false);
+		counter.increment();
+		assertEquals(5, counter.get());
+	}
+
+	@Test
+	public void histogramBuckets()
+	{
+		LatencyHistogram h = Metrics.histogram("test.buckets");
+		h.record(0);
+		h.record(-5);
+		h.record(1);
+		h.record(2);
+		h.record(3);
+		h.record(1024);
+		h.record(1L << 50);
+		assertEquals(3, h.getBucket(0));
+		assertEquals(2, h.getBucket(1));
+		assertEquals(1, h.getBucket(10));
+		// Everything too long for the last bucket ends up in it
+		assertEquals(1, h.getBucket(LatencyHistogram.BUCKETS - 1));
+		assertEquals(7, h.getCount());
+		assertEquals(1 + 2 + 3 + 1024 + (1L << 50), h.getTotalNanos());
+		assertEquals(1L << 50, h.getMaxNanos());
+
+		// Not timed while disabled
+		Metrics.setEnabled(false);
+		h.stop(Metrics.start());
+		h.record(7);
+		assertEquals(7, h.getCount());
+	}
+
+	@Test
+	public void percentilesAreBucketBounds()
+	{
+		LatencyHistogram h = Metrics.histogram("test.percentiles");
+		assertEquals(0, h.getPercentileNanos(0.5));
+		h.record(1);
+		h.record(3);
+		h.record(1000);
+		assertEquals(3, h.getPercentileNanos(0.5));
+		// The bucket goes up to 1023, but nothing took that long
+		assertEquals(1000, h.getPercentileNanos(0.9));
+	}
+
+	@Test
+	public void dumpsJson() throws IOException
+	{
+		Metrics.counter("test.counter").add(5);
+		Metrics.gauge("test.gauge", new Metrics.Gauge()
+		{
+			public long getValue()
+			{
+				return 42;
+			}
+		});
+		LatencyHistogram h = Metrics.histogram("test.dump");
+		h.record(1);
+		h.record(3);
+		h.record(1000);
+
+		String json = dump();
+		assertTrue(json.startsWith("{\n  \"time\": "));
+		assertTrue(json.contains(",\n  \"enabled\": true,\n"));
+		assertTrue(json.contains("\n    \"test.counter\": 5"));
+		assertTrue(json.contains("\n    \"test.gauge\": 42"));
+		assertTrue(json.contains("\n    \"test.dump\": {\"count\": 3, "
+				+ "\"mean_ns\": 334, \"p50_ns\": 3, \"p90_ns\": 1000, "
+				+ "\"p99_ns\": 1000, \"max_ns\": 1000, "
+				+ "\"buckets\": [1, 1, 0, 0, 0, 0, 0, 0, 0, 1]}"));
+		assertTrue(json.endsWith("\n  }\n}\n"));
+
+		Metrics.gauge("test.gauge", null);
+		assertFalse(dump().contains("test.gauge"));
+	}
+
+	private static String dump() throws IOException
+	{
+		StringWriter out = new StringWriter();
+		Metrics.dump(out);
+		return out.toString();
+	}
+}
@@ -0,0 +1,122 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelMapLoaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// More threads than the machine may have, so the input is split anyway
+	private final ParallelMapLoader loader = new ParallelMapLoader(4);
+
+	@After
+	public void tearDown()
+	{
+		loader.shutdown();
+	}
+
+	@Test
+	public void sameAsSequential() throws IOException
+	{
+		String text = text();
+		assertEquals(text, loader.parse(text).serialize());
+	}
+
+	@Test
+	public void loadsMappedFile() throws IOException
+	{
+		MapBundle bundle = bundle();
+		File file = folder.newFile("m.map");
+		MapFiles.save(bundle, file, false);
+		assertEquals(bundle.serialize(), loader.load(file).serialize());
+	}
+
+	@Test
+	public void chunkErrorMatchesSequential()
+	{
+		String text = text();
+		// Errors in two different chunks, the first in file order counts
+		StringBuilder corrupt = new StringBuilder(text);
+		corrupt.setCharAt(digitAfter(text, text.length() / 2), 'x');
+		corrupt.setCharAt(digitAfter(text, text.length() * 3 / 4), 'x');
+		assertSameError(corrupt.toString());
+	}
+
+	@Test
+	public void structureErrorMatchesSequential()
+	{
+		String text = text();
+		// An unclosed path runs into the next one
+		int close = text.indexOf('>', text.length() / 3);
+		assertSameError(text.substring(0, close) + text.substring(close + 1));
+		assertSameError(text.substring(0, text.length() - 1));
+	}
+
+	private void assertSameError(String text)
+	{
+		MapFormatException expected = null;
+		try
+		{
+			new MapParser(text).parseBundle();
+			fail();
+		}
+		catch (MapFormatException e)
+		{
+			expected = e;
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);
+		}
+		try
+		{
+			loader.parse(text);
+			fail();
+		}
+		catch (MapFormatException e)
+		{
+			assertEquals(expected.getMessage(), e.getMessage());
+			assertEquals(expected.getOffset(), e.getOffset());
+		}
+		catch (IOException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
+	private static int digitAfter(String text, int from)
+	{
+		int i = from;
+		while (!Character.isDigit(text.charAt(i)))
+			i++;
+		return i;
+	}
+
+	private static MapBundle bundle()
+	{
+		ArrayList<MapPath> paths = new ArrayList<MapPath>();
+		for (int i = 0; i < 400; i++)
+			paths.add(TestPaths.random(i, 40 + i % 60, 10, 0));
+		return new MapBundle(paths);
+	}
+
+	// Well above the size the loader splits
+	private static String text()
+	{
+		String text = bundle().serialize();
+		assertTrue(text.length() > 4 * 64 * 1024);
+		return text;
+	}
+}
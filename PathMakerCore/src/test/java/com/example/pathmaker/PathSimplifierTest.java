@@ -0,0 +1,47 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PathSimplifierTest
+{
+	private final PathSimplifier simplifier = new PathSimplifier(1f);
+
+	@Test
+	public void straightRunKeepsItsEnds()
+	{
+		MapBundle bundle = AsyncMapStoreTest.chain(6);
+		MapPath path = bundle.paths.get(0);
+		assertEquals(4, simplifier.simplify(bundle));
+
+		// Ids stay until the path is compacted
+		assertEquals(6, path.size());
+		assertEquals(4, path.getDeletedCount());
+		assertTrue(path.getWaypoint(0).hasConnection(5));
+		path.compact();
+		assertEquals(2, path.size());
+		assertTrue(path.getWaypoint(0).hasConnection(1));
+		assertEquals(150, path.getWaypoint(1).x);
+	}
+
+	@Test
+	public void keepsJunctionsAndTombstones()
+	{
+		MapBundle bundle = AsyncMapStoreTest.chain(9);
+		MapPath path = bundle.paths.get(0);
+		// A branch off waypoint 4 makes it a junction
+		path.addWaypoint(new Waypoint(120, 60));
+		bundle.connect(path.getWaypoint(9), path.getWaypoint(4));
+		path.deleteWaypoint(7);
+
+		simplifier.simplify(bundle);
+		assertTrue(path.getWaypoint(0).hasConnection(4));
+		assertTrue(path.getWaypoint(4).hasConnection(6));
+		assertTrue(path.getWaypoint(4).hasConnection(9));
+		// Cut off by the deletion, a lone point now
+		assertEquals(0, path.getWaypoint(8).getConnectionCount());
+		assertEquals(5, path.getDeletedCount());
+	}
+}
@@ -0,0 +1,133 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PathValidatorTest
+{
+	private static final String VALID = "$<{0(0,0)[1]}{1(30,0)[0]}>$";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void wrongIdIsReset()
+	{
+		MapBundle bundle = MapBundle.createFromString(
+				"$<{0(0,0)[1]}{5(30,0)[0]}>$");
+		ArrayList<PathValidator.Violation> found =
+				new PathValidator(false).validate(bundle);
+		assertEquals(1, found.size());
+		assertViolation(PathValidator.WRONG_ID, 1, 5, found.get(0));
+		assertEquals(5, bundle.paths.get(0).getWaypoint(1).id);
+
+		assertEquals(1, new PathValidator(true).validate(bundle).size());
+		assertEquals(1, bundle.paths.get(0).getWaypoint(1).id);
+		assertRepaired(bundle);
+	}
+
+	@Test
+	public void danglingEdgeAndSelfLoopAreDropped()
+	{
+		MapBundle bundle = MapBundle.createFromString(
+				"$<{0(0,0)[1][7]}{1(30,0)[0][1]}>$");
+		ArrayList<PathValidator.Violation> found =
+				new PathValidator(true).validate(bundle);
+		assertEquals(2, found.size());
+		assertViolation(PathValidator.DANGLING_EDGE, 0, 7, found.get(0));
+		assertViolation(PathValidator.SELF_LOOP, 1, 1, found.get(1));
+		assertRepaired(bundle);
+	}
+
+	@Test
+	public void oneWayEdgeGetsItsReverse()
+	{
+		MapBundle bundle = MapBundle.createFromString(
+				"$<{0(0,0)[1]}{1(30,0)}>$");
+		ArrayList<PathValidator.Violation> found =
+				new PathValidator(true).validate(bundle);
+		assertEquals(1, found.size());
+		assertViolation(PathValidator.ONE_WAY_EDGE, 0, 1, found.get(0));
+		assertRepaired(bundle);
+	}
+
+	@Test
+	public void repeatedEdgeIsReported()
+	{
+		MapBundle bundle = MapBundle.createFromString(
+				"$<{0(0,0)[1]}{1(30,0)[0][0][0]}>$");
+		// Only one copy is kept, but each repeat is reported until repaired
+		assertEquals(VALID, bundle.serialize());
+		ArrayList<PathValidator.Violation> found =
+				new PathValidator(false).validate(bundle);
+		assertEquals(2, found.size());
+		assertViolation(PathValidator.REPEATED_EDGE, 1, 0, found.get(1));
+		assertEquals(2, new PathValidator(true).validate(bundle).size());
+		assertRepaired(bundle);
+	}
+
+	@Test
+	public void everyLoadRepairs() throws IOException
+	{
+		String broken = "$<{0(0,0)[1][1][4]}{1(30,0)}>$";
+		File text = folder.newFile("text.map");
+		FileOutputStream out = new FileOutputStream(text);
+		try
+		{
+			out.write(broken.getBytes("US-ASCII"));
+		}
+		finally
+		{
+			out.close();
+		}
+		// Written as read, so without the repeat
+		File binary = folder.newFile("binary.map");
+		MapFiles.save(MapBundle.createFromString(broken), binary, true);
+
+		ArrayList<PathValidator.Violation> repairs =
+				new ArrayList<PathValidator.Violation>();
+		assertEquals(VALID, MapFiles.load(text, repairs).serialize());
+		assertEquals(3, repairs.size());
+
+		repairs.clear();
+		assertEquals(VALID, MapFiles.load(binary, repairs).serialize());
+		assertEquals(2, repairs.size());
+
+		ParallelMapLoader loader = new ParallelMapLoader(2);
+		try
+		{
+			repairs.clear();
+			assertEquals(VALID, loader.load(text, repairs).serialize());
+			assertEquals(3, repairs.size());
+		}
+		finally
+		{
+			loader.shutdown();
+		}
+	}
+
+	private static void assertViolation(int type, int waypointId,
+			int edgeToId, PathValidator.Violation violation)
+	{
+		assertEquals(type, violation.type);
+		assertEquals(0, violation.pathIndex);
+		assertEquals(waypointId, violation.waypointId);
+		assertEquals(edgeToId, violation.edgeToId);
+	}
+
+	// Repaired into VALID, with nothing left to find
+	private static void assertRepaired(MapBundle bundle)
+	{
+		assertEquals(VALID, bundle.serialize());
+		assertTrue(new PathValidator(false).validate(bundle).isEmpty());
+	}
+}
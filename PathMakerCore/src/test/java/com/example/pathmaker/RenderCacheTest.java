@@ -0,0 +1,90 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RenderCacheTest
+{
+	private final RenderCache cache = new RenderCache();
+
+	@Test
+	public void cleanCacheIgnoresNewSnapshots()
+	{
+		MapBundle bundle = bundle();
+		assertTrue(cache.isDirty());
+		assertTrue(cache.update(bundle.publish()));
+		assertFalse(cache.isDirty());
+		assertEquals(2, cache.size());
+
+		// Not marked dirty, so the edit doesn't show yet
+		extend(bundle.paths.get(1));
+		assertFalse(cache.update(bundle.publish()));
+		assertEquals(4, cache.get(1).getSegmentCount());
+
+		cache.markDirty();
+		assertTrue(cache.update(bundle.publish()));
+		assertEquals(5, cache.get(1).getSegmentCount());
+	}
+
+	@Test
+	public void dirtyCacheOnlyRebuildsChangedPaths()
+	{
+		MapBundle bundle = bundle();
+		cache.update(bundle.publish());
+		cache.markDirty();
+		// Nothing changed since
+		assertFalse(cache.update(bundle.publish()));
+		assertFalse(cache.isDirty());
+
+		float[] before = segments(cache.get(0));
+		extend(bundle.paths.get(1));
+		cache.markDirty();
+		assertTrue(cache.update(bundle.publish()));
+		assertEquals(before.length, cache.get(0).segmentFloats);
+		for (int i = 0; i < before.length; i++)
+			assertEquals(before[i], cache.get(0).segments[i], 0f);
+	}
+
+	@Test
+	public void removedPathsAreDropped()
+	{
+		MapBundle bundle = bundle();
+		cache.update(bundle.publish());
+		bundle.removePath(bundle.paths.get(1));
+		cache.markDirty();
+		assertTrue(cache.update(bundle.publish()));
+		assertEquals(1, cache.size());
+	}
+
+	// Two chains of 5 waypoints, the second one below the first
+	private static MapBundle bundle()
+	{
+		MapBundle bundle = AsyncMapStoreTest.chain(5);
+		MapBundle second = AsyncMapStoreTest.chain(5);
+		MapPath path = second.paths.get(0);
+		for (int i = 0; i < path.size(); i++)
+			path.getWaypoint(i).y = 100;
+		bundle.paths.add(path);
+		return bundle;
+	}
+
+	// Adds one waypoint to the end of a chain
+	private static void extend(MapPath path)
+	{
+		Waypoint last = path.getWaypoint(path.size() - 1);
+		Waypoint wp = new Waypoint(last.x + 30, last.y);
+		path.addWaypoint(wp);
+		last.addConnection(wp);
+		wp.addConnection(last);
+	}
+
+	private static float[] segments(DrawList list)
+	{
+		float[] copy = new float[list.segmentFloats];
+		System.arraycopy(list.segments, 0, copy, 0, copy.length);
+		return copy;
+	}
+}
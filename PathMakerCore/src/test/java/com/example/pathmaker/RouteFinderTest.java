@@ -0,0 +1,94 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RouteFinderTest
+{
+	private final RouteFinder finder = new RouteFinder();
+
+	@Test
+	public void takesShortestRoute()
+	{
+		// Fewer hops over 4, but longer than the straight chain
+		MapPath path = detour();
+		Route route = finder.findRoute(path, 0, 3);
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, route.waypointIds);
+		assertEquals(90f, route.length, 1e-4f);
+	}
+
+	@Test
+	public void unreachableTargetHasNoRoute()
+	{
+		MapPath path = detour();
+		path.addWaypoint(new Waypoint(500, 500));
+		assertNull(finder.findRoute(path, 0, 5));
+		assertNull(finder.findRoute(path, 5, 0));
+	}
+
+	@Test
+	public void routeToItself()
+	{
+		Route route = finder.findRoute(detour(), 2, 2);
+		assertArrayEquals(new int[] { 2 }, route.waypointIds);
+		assertEquals(0f, route.length, 0f);
+	}
+
+	@Test
+	public void avoidsTombstones()
+	{
+		MapPath path = detour();
+		path.deleteWaypoint(1);
+		Route route = finder.findRoute(path, 0, 3);
+		assertArrayEquals(new int[] { 0, 4, 3 }, route.waypointIds);
+		assertEquals(TestPaths.length(path.freeze(), route.waypointIds),
+				route.length, 1e-4f);
+		assertNull(finder.findRoute(path, 0, 1));
+	}
+
+	@Test
+	public void reusedFinderMatchesFreshOne()
+	{
+		// Big path first, so the smaller one reuses bigger arrays
+		FrozenPath big = TestPaths.random(5, 300, 60, 20).freeze();
+		FrozenPath small = TestPaths.random(6, 50, 10, 5).freeze();
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++)
+		{
+			FrozenPath path = i % 2 == 0 ? big : small;
+			int from = random.nextInt(path.size);
+			int to = random.nextInt(path.size);
+			Route expected = new RouteFinder().findRoute(path, from, to);
+			Route route = finder.findRoute(path, from, to);
+			if (expected == null)
+			{
+				assertNull(route);
+				continue;
+			}
+			assertArrayEquals(expected.waypointIds, route.waypointIds);
+			assertEquals(expected.length, route.length, 0f);
+		}
+	}
+
+	// 0 to 3 in a straight line 30 apart, and a detour 0 - 4 - 3 well off
+	// the line
+	private static MapPath detour()
+	{
+		MapPath path = new MapPath(new Waypoint(0, 0));
+		path.addWaypoint(new Waypoint(30, 0));
+		path.addWaypoint(new Waypoint(60, 0));
+		path.addWaypoint(new Waypoint(90, 0));
+		path.addWaypoint(new Waypoint(45, 80));
+		TestPaths.connect(path, 0, 1);
+		TestPaths.connect(path, 1, 2);
+		TestPaths.connect(path, 2, 3);
+		TestPaths.connect(path, 0, 4);
+		TestPaths.connect(path, 4, 3);
+		return path;
+	}
+}
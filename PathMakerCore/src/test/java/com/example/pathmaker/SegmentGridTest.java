@@ -0,0 +1,131 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SegmentGridTest
+{
+	private final SegmentGrid grid = new SegmentGrid(64);
+	private final DrawList out = new DrawList();
+
+	@Test
+	public void queryMatchesBruteForce()
+	{
+		Random random = new Random(10);
+		for (int round = 0; round < 20; round++)
+		{
+			// Every other round has a stray point far away, which makes the
+			// grid coarser
+			DrawList list = randomList(random, round % 2 == 1);
+			grid.build(list);
+			for (int q = 0; q < 50; q++)
+			{
+				float left = random.nextInt(1200) - 100;
+				float top = random.nextInt(1200) - 100;
+				float right = left + random.nextInt(400);
+				float bottom = top + random.nextInt(400);
+				grid.query(left, top, right, bottom, out);
+				assertEquals(segments(cull(list, left, top, right, bottom)),
+						segments(out));
+				assertEquals(points(cull(list, left, top, right, bottom)),
+						points(out));
+			}
+		}
+	}
+
+	@Test
+	public void longSegmentIsReturnedOnce()
+	{
+		DrawList list = new DrawList();
+		list.addSegment(0, 0, 1000, 1000);
+		list.addPoint(0, 0);
+		list.addPoint(1000, 1000);
+		grid.build(list);
+		grid.query(-10, -10, 2000, 2000, out);
+		assertEquals(1, out.getSegmentCount());
+		assertEquals(2, out.getPointCount());
+
+		// Only its bounding box overlaps this window
+		grid.query(900, 0, 1000, 50, out);
+		assertEquals(1, out.getSegmentCount());
+		assertEquals(0, out.getPointCount());
+	}
+
+	@Test
+	public void emptyListHasNothingToCull()
+	{
+		grid.build(randomList(new Random(1), false));
+		grid.build(new DrawList());
+		grid.query(0, 0, 1000, 1000, out);
+		assertEquals(0, out.getSegmentCount());
+		assertEquals(0, out.getPointCount());
+	}
+
+	// Short segments and points scattered over 1000 x 1000
+	private static DrawList randomList(Random random, boolean stray)
+	{
+		DrawList list = new DrawList();
+		for (int i = 0; i < 300; i++)
+		{
+			float x = random.nextInt(1000);
+			float y = random.nextInt(1000);
+			list.addPoint(x, y);
+			list.addSegment(x, y, x + random.nextInt(200) - 100, y
+					+ random.nextInt(200) - 100);
+		}
+		if (stray)
+			list.addPoint(1e7f, 1e7f);
+		return list;
+	}
+
+	// What SegmentGrid.query() should return: segments whose bounding box
+	// overlaps the window and points inside it
+	private static DrawList cull(DrawList list, float left, float top,
+			float right, float bottom)
+	{
+		DrawList culled = new DrawList();
+		float[] s = list.segments;
+		for (int f = 0; f < list.segmentFloats; f += 4)
+		{
+			if (Math.max(s[f], s[f + 2]) >= left
+					&& Math.min(s[f], s[f + 2]) <= right
+					&& Math.max(s[f + 1], s[f + 3]) >= top
+					&& Math.min(s[f + 1], s[f + 3]) <= bottom)
+				culled.addSegment(s[f], s[f + 1], s[f + 2], s[f + 3]);
+		}
+		float[] p = list.points;
+		for (int f = 0; f < list.pointFloats; f += 2)
+		{
+			if (p[f] >= left && p[f] <= right && p[f + 1] >= top
+					&& p[f + 1] <= bottom)
+				culled.addPoint(p[f], p[f + 1]);
+		}
+		return culled;
+	}
+
+	// The grid returns cell by cell, so order doesn't count
+	private static ArrayList<String> segments(DrawList list)
+	{
+		ArrayList<String> all = new ArrayList<String>();
+		float[] s = list.segments;
+		for (int f = 0; f < list.segmentFloats; f += 4)
+			all.add(s[f] + "," + s[f + 1] + "," + s[f + 2] + "," + s[f + 3]);
+		Collections.sort(all);
+		return all;
+	}
+
+	private static ArrayList<String> points(DrawList list)
+	{
+		ArrayList<String> all = new ArrayList<String>();
+		float[] p = list.points;
+		for (int f = 0; f < list.pointFloats; f += 2)
+			all.add(p[f] + "," + p[f + 1]);
+		Collections.sort(all);
+		return all;
+	}
+}
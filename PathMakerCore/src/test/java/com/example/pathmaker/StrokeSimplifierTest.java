@@ -0,0 +1,140 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StrokeSimplifierTest
+{
+	private static final float TOLERANCE = 2f;
+	// Samples per ACTION_MOVE
+	private static final int BATCH = 5;
+
+	private final TouchSamplerTest.Points samples =
+			new TouchSamplerTest.Points();
+	private final TouchSamplerTest.Points committed =
+			new TouchSamplerTest.Points();
+	private final StrokeSimplifier simplifier =
+			new StrokeSimplifier(TOLERANCE, committed);
+	private final TouchSampler sampler = new TouchSampler(3f,
+			new TouchSampler.Listener()
+			{
+				public void onSample(int x, int y)
+				{
+					samples.onSample(x, y);
+					simplifier.add(x, y);
+				}
+			});
+
+	@Test
+	public void straightStrokeKeepsItsEnds()
+	{
+		float[] xs = new float[40];
+		float[] ys = new float[40];
+		for (int i = 0; i < xs.length; i++)
+		{
+			xs[i] = 4 * (i + 1);
+			ys[i] = 2 * (i + 1);
+		}
+		replay(xs, ys);
+		assertArrayEquals(new int[] { 160, 80 }, committed.toArray());
+	}
+
+	@Test
+	public void cornerIsKept()
+	{
+		float[] xs = new float[40];
+		float[] ys = new float[40];
+		for (int i = 0; i < 20; i++)
+		{
+			xs[i] = 5 * (i + 1);
+			xs[20 + i] = 100;
+			ys[20 + i] = 5 * (i + 1);
+		}
+		replay(xs, ys);
+		assertArrayEquals(new int[] { 100, 0, 100, 100 },
+				committed.toArray());
+	}
+
+	@Test
+	public void longStraightStrokeIsSplit()
+	{
+		// More samples than the simplifier holds back
+		float[] xs = new float[100];
+		float[] ys = new float[100];
+		for (int i = 0; i < xs.length; i++)
+			xs[i] = 4 * (i + 1);
+		replay(xs, ys);
+		assertArrayEquals(new int[] { 256, 0, 400, 0 }, committed.toArray());
+	}
+
+	@Test
+	public void curveStaysWithinTolerance()
+	{
+		float[] xs = new float[300];
+		float[] ys = new float[300];
+		for (int i = 0; i < xs.length; i++)
+		{
+			double a = 2 * Math.PI * (i + 1) / xs.length;
+			xs[i] = (float) (100 * Math.sin(a));
+			ys[i] = (float) (100 - 100 * Math.cos(a));
+		}
+		replay(xs, ys);
+		int[] kept = committed.toArray();
+		int[] all = samples.toArray();
+		assertTrue(kept.length > 8);
+		assertTrue(kept.length < all.length / 4);
+		assertWithinTolerance(all, kept);
+	}
+
+	// Feeds a trace starting at (0, 0) through the sampler in batches, the
+	// way PathView does with ACTION_MOVE events
+	private void replay(float[] xs, float[] ys)
+	{
+		sampler.begin(0, 0, 0);
+		simplifier.begin(0, 0);
+		long[] times = new long[xs.length];
+		for (int i = 0; i < times.length; i++)
+			times[i] = i + 1;
+		float[] bx = new float[BATCH];
+		float[] by = new float[BATCH];
+		long[] bt = new long[BATCH];
+		for (int i = 0; i < xs.length; i += BATCH)
+		{
+			int count = Math.min(BATCH, xs.length - i);
+			System.arraycopy(xs, i, bx, 0, count);
+			System.arraycopy(ys, i, by, 0, count);
+			System.arraycopy(times, i, bt, 0, count);
+			sampler.addBatch(bx, by, bt, count);
+		}
+		sampler.end();
+		simplifier.finish();
+	}
+
+	// Every sample lies within tolerance of the kept segment it falls on,
+	// and the kept points are samples, in order
+	private static void assertWithinTolerance(int[] all, int[] kept)
+	{
+		int ax = 0;
+		int ay = 0;
+		int from = 0;
+		for (int k = 0; k < kept.length; k += 2)
+		{
+			int to = from;
+			while (all[to] != kept[k] || all[to + 1] != kept[k + 1])
+				to += 2;
+			for (int i = from; i < to; i += 2)
+			{
+				float d = StrokeSimplifier.distanceToSegmentSq(all[i],
+						all[i + 1], ax, ay, kept[k], kept[k + 1]);
+				assertTrue(d <= TOLERANCE * TOLERANCE);
+			}
+			ax = kept[k];
+			ay = kept[k + 1];
+			from = to + 2;
+		}
+		assertEquals(all.length, from);
+	}
+}
@@ -0,0 +1,62 @@
+package com.example.pathmaker;
+
+import java.util.Random;
+
+// Seeded random paths shared by the routing tests
+final class TestPaths
+{
+	private TestPaths()
+	{
+	}
+
+	// n waypoints scattered over a 1000 x 1000 square. Each is connected to
+	// one of the few added before it, plus extra random connections, and
+	// then deleted waypoints are tombstoned, which can split the path.
+	static MapPath random(long seed, int n, int extra, int deleted)
+	{
+		Random random = new Random(seed);
+		MapPath path = new MapPath(new Waypoint(random.nextInt(1000),
+				random.nextInt(1000)));
+		for (int i = 1; i < n; i++)
+		{
+			path.addWaypoint(new Waypoint(random.nextInt(1000),
+					random.nextInt(1000)));
+			connect(path, i, Math.max(0, i - 1 - random.nextInt(4)));
+		}
+		for (int i = 0; i < extra; i++)
+		{
+			int a = random.nextInt(n);
+			int b = random.nextInt(n);
+			// A self loop would break the map's invariants
+			if (a != b)
+				connect(path, a, b);
+		}
+		for (int i = 0; i < deleted; i++)
+			path.deleteWaypoint(random.nextInt(n));
+		return path;
+	}
+
+	static void connect(MapPath path, int a, int b)
+	{
+		path.getWaypoint(a).addConnection(path.getWaypoint(b));
+		path.getWaypoint(b).addConnection(path.getWaypoint(a));
+	}
+
+	// Length of the route through ids, or NaN if two of them in a row
+	// aren't connected
+	static float length(FrozenPath path, int[] ids)
+	{
+		float length = 0f;
+		for (int i = 1; i < ids.length; i++)
+		{
+			int e = path.offsets[ids[i - 1]];
+			int end = path.offsets[ids[i - 1] + 1];
+			while (e < end && path.targets[e] != ids[i])
+				e++;
+			if (e == end)
+				return Float.NaN;
+			length += path.lengths[e];
+		}
+		return length;
+	}
+}
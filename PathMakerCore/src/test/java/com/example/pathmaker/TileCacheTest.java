@@ -0,0 +1,209 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TileCacheTest
+{
+	private static final int TILE_BYTES = 10;
+
+	private final Tiles tiles = new Tiles();
+	private final TileCache<Integer> cache =
+			new TileCache<Integer>(tiles, tiles, 3 * TILE_BYTES);
+
+	@After
+	public void tearDown()
+	{
+		cache.close();
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() throws Exception
+	{
+		request(0, 1, 2);
+		tiles.awaitLoaded(3);
+		assertEquals(3 * TILE_BYTES, cache.getBytes());
+
+		cache.get(0);
+		request(3);
+		tiles.awaitLoaded(1);
+		// Over budget now, the next request makes room
+		request(3);
+		assertEquals(3 * TILE_BYTES, cache.getBytes());
+		assertEquals(Arrays.asList(1), tiles.released);
+		assertTrue(cache.contains(0));
+		assertFalse(cache.contains(1));
+		assertTrue(cache.contains(2));
+		assertTrue(cache.contains(3));
+	}
+
+	@Test
+	public void keepsRequestedTilesOverBudget() throws Exception
+	{
+		request(0, 1, 2, 3);
+		tiles.awaitLoaded(4);
+		request(0, 1, 2, 3);
+		assertEquals(4, cache.size());
+		assertTrue(tiles.released.isEmpty());
+
+		request(3);
+		assertEquals(3, cache.size());
+		assertEquals(Arrays.asList(0), tiles.released);
+	}
+
+	@Test
+	public void newRequestReplacesQueue() throws Exception
+	{
+		tiles.block = new CountDownLatch(1);
+		request(0, 1, 2);
+		tiles.decoding.await(5, TimeUnit.SECONDS);
+
+		// 0 is being decoded, so it isn't queued again
+		request(5, 0, 6);
+		tiles.block.countDown();
+		tiles.awaitLoaded(3);
+		assertEquals(Arrays.asList(0, 5, 6), tiles.decoded());
+		assertFalse(cache.contains(1));
+		assertFalse(cache.contains(2));
+	}
+
+	@Test
+	public void failedTileIsRetriedLater() throws Exception
+	{
+		tiles.failing = 1;
+		request(1, 2);
+		tiles.awaitLoaded(1);
+		// Too soon to try again
+		request(1, 2);
+		assertFalse(cache.contains(1));
+
+		TileCache<Integer> retrying =
+				new TileCache<Integer>(tiles, tiles, 3 * TILE_BYTES, 0);
+		try
+		{
+			tiles.failing = 3;
+			// Asked for again each frame, as the view does, until it's there
+			for (int i = 0; i < 500 && !retrying.contains(3); i++)
+			{
+				retrying.request(new int[] { 3 }, 1);
+				Thread.sleep(10);
+			}
+			assertTrue(retrying.contains(3));
+			assertEquals(Arrays.asList(1, 2, 3, 3), tiles.decoded());
+		}
+		finally
+		{
+			retrying.close();
+		}
+	}
+
+	@Test
+	public void closeReleasesTileBeingDecoded() throws Exception
+	{
+		tiles.block = new CountDownLatch(1);
+		request(0);
+		tiles.decoding.await(5, TimeUnit.SECONDS);
+
+		new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Thread.sleep(50);
+				}
+				catch (InterruptedException e)
+				{
+					// Let the decode go on anyway
+				}
+				tiles.block.countDown();
+			}
+		}.start();
+		cache.close();
+		assertEquals(Arrays.asList(0), tiles.released);
+		assertEquals(Thread.currentThread(), tiles.releasedOn);
+	}
+
+	private void request(int... keys)
+	{
+		cache.request(keys, keys.length);
+	}
+
+	// Decodes a tile to its key and records what happens to it
+	private static class Tiles implements TileCache.Decoder<Integer>,
+			TileCache.Listener
+	{
+		private final ArrayList<Integer> decoded = new ArrayList<Integer>();
+		private final Semaphore loaded = new Semaphore(0);
+		final ArrayList<Integer> released = new ArrayList<Integer>();
+		final CountDownLatch decoding = new CountDownLatch(1);
+		volatile CountDownLatch block = null;
+		// Fails to decode this key once
+		volatile int failing = -1;
+		volatile Thread releasedOn = null;
+
+		public Integer decode(int key) throws IOException
+		{
+			synchronized (this)
+			{
+				decoded.add(key);
+			}
+			decoding.countDown();
+			if (key == failing)
+			{
+				failing = -1;
+				throw new IOException("Couldn't decode " + key);
+			}
+			if (block != null)
+			{
+				try
+				{
+					block.await();
+				}
+				catch (InterruptedException e)
+				{
+					throw new IOException(e);
+				}
+			}
+			return key;
+		}
+
+		public int sizeOf(Integer tile)
+		{
+			return TILE_BYTES;
+		}
+
+		public void release(Integer tile)
+		{
+			releasedOn = Thread.currentThread();
+			released.add(tile);
+		}
+
+		public void onTileLoaded(int key)
+		{
+			loaded.release();
+		}
+
+		synchronized ArrayList<Integer> decoded()
+		{
+			return new ArrayList<Integer>(decoded);
+		}
+
+		void awaitLoaded(int count) throws InterruptedException
+		{
+			assertTrue(loaded.tryAcquire(count, 5, TimeUnit.SECONDS));
+		}
+	}
+}
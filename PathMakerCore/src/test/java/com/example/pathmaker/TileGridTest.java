@@ -0,0 +1,80 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TileGridTest
+{
+	// 10 x 10 tiles of 100 pixels
+	private final TileGrid grid = new TileGrid(100, 1000, 1000);
+	private final int[] out = new int[100];
+	private final int[] visible = new int[1];
+
+	@Test
+	public void visibleTilesInRowOrder()
+	{
+		int n = grid.collect(150, 150, 350, 250, 0, out, visible);
+		assertEquals(6, visible[0]);
+		assertArrayEquals(new int[] { 11, 12, 13, 21, 22, 23 }, keys(n));
+	}
+
+	@Test
+	public void marginFollowsVisibleTiles()
+	{
+		int n = grid.collect(150, 150, 350, 250, 1, out, visible);
+		assertEquals(6, visible[0]);
+		assertArrayEquals(new int[] { 11, 12, 13, 21, 22, 23, 0, 1, 2, 3, 4,
+				10, 14, 20, 24, 30, 31, 32, 33, 34 }, keys(n));
+		assertTrue(n <= grid.getMaxTiles(200, 100, 1));
+	}
+
+	@Test
+	public void clampsAtTopLeft()
+	{
+		int n = grid.collect(-50, -50, 50, 50, 2, out, visible);
+		assertEquals(1, visible[0]);
+		assertArrayEquals(new int[] { 0, 1, 2, 10, 11, 12, 20, 21, 22 },
+				keys(n));
+	}
+
+	@Test
+	public void clampsAtBottomRight()
+	{
+		int n = grid.collect(950, 950, 2000, 2000, 1, out, visible);
+		assertEquals(1, visible[0]);
+		assertArrayEquals(new int[] { 99, 88, 89, 98 }, keys(n));
+	}
+
+	@Test
+	public void windowLargerThanImage()
+	{
+		int n = grid.collect(-500, -500, 1500, 1500, 3, out, visible);
+		assertEquals(100, visible[0]);
+		assertEquals(100, n);
+		assertEquals(100, grid.getMaxTiles(2000, 2000, 3));
+	}
+
+	@Test
+	public void edgeTilesAreCut()
+	{
+		TileGrid small = new TileGrid(100, 250, 150);
+		assertEquals(3, small.columns);
+		assertEquals(2, small.rows);
+		int corner = small.getKey(2, 1);
+		assertEquals(200, small.getLeft(corner));
+		assertEquals(100, small.getTop(corner));
+		assertEquals(50, small.getWidth(corner));
+		assertEquals(50, small.getHeight(corner));
+		assertEquals(100, small.getWidth(small.getKey(1, 0)));
+	}
+
+	private int[] keys(int n)
+	{
+		return Arrays.copyOf(out, n);
+	}
+}
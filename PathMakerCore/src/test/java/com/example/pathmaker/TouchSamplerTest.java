@@ -0,0 +1,82 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class TouchSamplerTest
+{
+	private final Points out = new Points();
+	private final TouchSampler sampler = new TouchSampler(5f, out);
+
+	@Test
+	public void keepsSamplesFartherThanMinDist()
+	{
+		sampler.begin(0, 0, 0);
+		// One ACTION_MOVE with its historical samples
+		sampler.addBatch(new float[] { 2, 4, 6, 9, 12, 20 },
+				new float[] { 0, 0, 0, 0, 0, 0 },
+				new long[] { 1, 2, 3, 4, 5, 6 }, 6);
+		assertArrayEquals(new int[] { 6, 0, 12, 0, 20, 0 }, out.toArray());
+	}
+
+	@Test
+	public void historicalSamplesKeepCorners()
+	{
+		sampler.begin(0, 0, 0);
+		// The newest sample alone would cut the corner at (30, 0)
+		sampler.addBatch(new float[] { 10, 20, 30, 30, 30 },
+				new float[] { 0, 0, 0, 10, 20 },
+				new long[] { 1, 2, 3, 4, 5 }, 5);
+		assertArrayEquals(new int[] { 10, 0, 20, 0, 30, 0, 30, 10, 30, 20 },
+				out.toArray());
+	}
+
+	@Test
+	public void dropsOlderSamples()
+	{
+		sampler.begin(0, 0, 10);
+		sampler.addBatch(new float[] { 10, 50, 20 },
+				new float[] { 0, 0, 0 }, new long[] { 11, 9, 12 }, 3);
+		assertArrayEquals(new int[] { 10, 0, 20, 0 }, out.toArray());
+	}
+
+	@Test
+	public void ignoresSamplesOutsideAStroke()
+	{
+		sampler.addBatch(new float[] { 10 }, new float[] { 10 },
+				new long[] { 1 }, 1);
+		sampler.begin(0, 0, 0);
+		sampler.end();
+		sampler.add(10, 10, 2);
+		assertArrayEquals(new int[0], out.toArray());
+	}
+
+	// Collects x, y pairs
+	static class Points implements TouchSampler.Listener,
+			StrokeSimplifier.Sink
+	{
+		final ArrayList<Integer> coords = new ArrayList<Integer>();
+
+		public void onSample(int x, int y)
+		{
+			coords.add(x);
+			coords.add(y);
+		}
+
+		public void commit(int x, int y)
+		{
+			onSample(x, y);
+		}
+
+		int[] toArray()
+		{
+			int[] a = new int[coords.size()];
+			for (int i = 0; i < a.length; i++)
+				a[i] = coords.get(i);
+			return a;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.example.pathmaker;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class WaypointGridTest
+{
+	private static final float RADIUS = 40f;
+
+	private final WaypointGrid grid = new WaypointGrid(RADIUS);
+
+	@Test
+	public void nearestMatchesFullScan()
+	{
+		Random random = new Random(1);
+		ArrayList<Waypoint> all = new ArrayList<Waypoint>();
+		// Negative coordinates and more cells than the table starts with
+		for (int i = 0; i < 5000; i++)
+		{
+			Waypoint wp = new Waypoint(random.nextInt(4000) - 2000,
+					random.nextInt(4000) - 2000);
+			all.add(wp);
+			grid.add(wp);
+		}
+		for (int i = 0; i < 1000; i++)
+		{
+			float x = random.nextFloat() * 4200 - 2100;
+			float y = random.nextFloat() * 4200 - 2100;
+			assertSame(scan(all, x, y), grid.nearest(x, y, RADIUS, null,
+					null));
+		}
+	}
+
+	@Test
+	public void removeAndClear()
+	{
+		Waypoint a = new Waypoint(10, 10);
+		Waypoint b = new Waypoint(20, 10);
+		grid.add(a);
+		grid.add(b);
+		assertSame(a, grid.nearest(0, 10, RADIUS, null, null));
+		assertSame(b, grid.nearest(0, 10, RADIUS, a, null));
+
+		assertTrue(grid.remove(a));
+		assertFalse(grid.remove(a));
+		assertSame(b, grid.nearest(0, 10, RADIUS, null, null));
+
+		grid.clear();
+		assertNull(grid.nearest(0, 10, RADIUS, null, null));
+		assertFalse(grid.remove(b));
+		grid.add(b);
+		assertSame(b, grid.nearest(0, 10, RADIUS, null, null));
+	}
+
+	private static Waypoint scan(ArrayList<Waypoint> all, float x, float y)
+	{
+		Waypoint best = null;
+		float bestSq = RADIUS * RADIUS;
+		for (Waypoint wp : all)
+		{
+			float dx = wp.x - x;
+			float dy = wp.y - y;
+			if (dx * dx + dy * dy < bestSq)
+			{
+				best = wp;
+				bestSq = dx * dx + dy * dy;
+			}
+		}
+		return best;
+	}
+}